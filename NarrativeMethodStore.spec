@@ -6,11 +6,19 @@ module NarrativeMethodStore {
     /* Returns the current running version of the NarrativeMethodStore. */
     funcdef ver() returns (string);
     
+    /*
+        index_generation - number of times the index of methods, apps and types
+            was built or patched since service start;
+        last_refresh_duration_ms - time (in milliseconds) spent on last build or
+            patch of the index.
+    */
     typedef structure {
     	string git_spec_url;
     	string git_spec_branch;
     	string git_spec_commit;
     	string update_interval;
+    	int index_generation;
+    	int last_refresh_duration_ms;
     } Status;
     
     /* Simply check the status of this service to see what Spec repository it is
@@ -795,6 +803,43 @@ module NarrativeMethodStore {
     funcdef register_repo(RegisterRepoParams params) returns () authentication
         required;
 
+    /*
+        git_url - optional filter by repository url.
+    */
+    typedef structure {
+        string git_url;
+    } GetRepoRegistrationStatusParams;
+
+    /*
+        Progress of repository registration.
+        stage - one of 'queued', 'cloning', 'validating', 'storing', 'indexing',
+            'done' or 'error';
+        module_name - defined after repository is cloned;
+        files_total, files_stored - progress of storing files into database;
+        version - version timestamp of registered repository (for 'done' stage);
+        error - error message (for 'error' stage);
+        queued_epoch_ms, finished_epoch_ms - time of queueing and finishing.
+    */
+    typedef structure {
+        string git_url;
+        string git_commit_hash;
+        string module_name;
+        string stage;
+        int files_total;
+        int files_stored;
+        int version;
+        string error;
+        int queued_epoch_ms;
+        int finished_epoch_ms;
+    } RepoRegistrationStatus;
+
+    /*
+        Returns queued, running and recently finished repository registrations
+        (all of them for admins, registrations submitted by caller for others).
+    */
+    funcdef get_repo_registration_status(GetRepoRegistrationStatusParams params)
+        returns (list<RepoRegistrationStatus>) authentication required;
+
     typedef structure {
         string module_name;
     } DisableRepoParams;
@@ -198,6 +198,8 @@ Status is a reference to a hash where the following keys are defined:
 	git_spec_branch has a value which is a string
 	git_spec_commit has a value which is a string
 	update_interval has a value which is a string
+	index_generation has a value which is an int
+	last_refresh_duration_ms has a value which is an int
 
 </pre>
 
@@ -211,6 +213,8 @@ Status is a reference to a hash where the following keys are defined:
 	git_spec_branch has a value which is a string
 	git_spec_commit has a value which is a string
 	update_interval has a value which is a string
+	index_generation has a value which is an int
+	last_refresh_duration_ms has a value which is an int
 
 
 =end text
@@ -5148,6 +5152,115 @@ RegisterRepoParams is a reference to a hash where the following keys are defined
  
 
 
+=head2 get_repo_registration_status
+
+  $return = $obj->get_repo_registration_status($params)
+
+=over 4
+
+=item Parameter and return types
+
+=begin html
+
+<pre>
+$params is a NarrativeMethodStore.GetRepoRegistrationStatusParams
+$return is a reference to a list where each element is a NarrativeMethodStore.RepoRegistrationStatus
+GetRepoRegistrationStatusParams is a reference to a hash where the following keys are defined:
+	git_url has a value which is a string
+RepoRegistrationStatus is a reference to a hash where the following keys are defined:
+	git_url has a value which is a string
+	git_commit_hash has a value which is a string
+	module_name has a value which is a string
+	stage has a value which is a string
+	files_total has a value which is an int
+	files_stored has a value which is an int
+	version has a value which is an int
+	error has a value which is a string
+	queued_epoch_ms has a value which is an int
+	finished_epoch_ms has a value which is an int
+
+</pre>
+
+=end html
+
+=begin text
+
+$params is a NarrativeMethodStore.GetRepoRegistrationStatusParams
+$return is a reference to a list where each element is a NarrativeMethodStore.RepoRegistrationStatus
+GetRepoRegistrationStatusParams is a reference to a hash where the following keys are defined:
+	git_url has a value which is a string
+RepoRegistrationStatus is a reference to a hash where the following keys are defined:
+	git_url has a value which is a string
+	git_commit_hash has a value which is a string
+	module_name has a value which is a string
+	stage has a value which is a string
+	files_total has a value which is an int
+	files_stored has a value which is an int
+	version has a value which is an int
+	error has a value which is a string
+	queued_epoch_ms has a value which is an int
+	finished_epoch_ms has a value which is an int
+
+
+=end text
+
+=item Description
+
+Returns queued, running and recently finished repository registrations
+(all of them for admins, registrations submitted by caller for others).
+
+=back
+
+=cut
+
+ sub get_repo_registration_status
+{
+    my($self, @args) = @_;
+
+# Authentication: none
+
+    if ((my $n = @args) != 1)
+    {
+	Bio::KBase::Exceptions::ArgumentValidationError->throw(error =>
+							       "Invalid argument count for function get_repo_registration_status (received $n, expecting 1)");
+    }
+    {
+	my($params) = @args;
+
+	my @_bad_arguments;
+        (ref($params) eq 'HASH') or push(@_bad_arguments, "Invalid type for argument 1 \"params\" (value was \"$params\")");
+        if (@_bad_arguments) {
+	    my $msg = "Invalid arguments passed to get_repo_registration_status:\n" . join("", map { "\t$_\n" } @_bad_arguments);
+	    Bio::KBase::Exceptions::ArgumentValidationError->throw(error => $msg,
+								   method_name => 'get_repo_registration_status');
+	}
+    }
+
+    my $url = $self->{url};
+    my $result = $self->{client}->call($url, $self->{headers}, {
+	    method => "NarrativeMethodStore.get_repo_registration_status",
+	    params => \@args,
+    });
+    if ($result) {
+	if ($result->is_error) {
+	    Bio::KBase::Exceptions::JSONRPC->throw(error => $result->error_message,
+					       code => $result->content->{error}->{code},
+					       method_name => 'get_repo_registration_status',
+					       data => $result->content->{error}->{error} # JSON::RPC::ReturnObject only supports JSONRPC 1.1 or 1.O
+					      );
+	} else {
+	    return wantarray ? @{$result->result} : $result->result->[0];
+	}
+    } else {
+        Bio::KBase::Exceptions::HTTP->throw(error => "Error invoking method get_repo_registration_status",
+					    status_line => $self->{client}->status_line,
+					    method_name => 'get_repo_registration_status',
+				       );
+    }
+}
+ 
+
+
 =head2 disable_repo
 
   $obj->disable_repo($params)
@@ -5465,6 +5578,14 @@ sub _validate_version {
 
 
 
+=item Description
+
+index_generation - number of times the index of methods, apps and types
+    was built or patched since service start;
+last_refresh_duration_ms - time (in milliseconds) spent on last build or
+    patch of the index.
+
+
 =item Definition
 
 =begin html
@@ -5475,6 +5596,8 @@ git_spec_url has a value which is a string
 git_spec_branch has a value which is a string
 git_spec_commit has a value which is a string
 update_interval has a value which is a string
+index_generation has a value which is an int
+last_refresh_duration_ms has a value which is an int
 
 </pre>
 
@@ -5487,6 +5610,8 @@ git_spec_url has a value which is a string
 git_spec_branch has a value which is a string
 git_spec_commit has a value which is a string
 update_interval has a value which is a string
+index_generation has a value which is an int
+last_refresh_duration_ms has a value which is an int
 
 
 =end text
@@ -7827,6 +7952,101 @@ git_commit_hash has a value which is a string
 
 
 
+=head2 GetRepoRegistrationStatusParams
+
+=over 4
+
+
+
+=item Description
+
+git_url - optional filter by repository url.
+
+
+=item Definition
+
+=begin html
+
+<pre>
+a reference to a hash where the following keys are defined:
+git_url has a value which is a string
+
+</pre>
+
+=end html
+
+=begin text
+
+a reference to a hash where the following keys are defined:
+git_url has a value which is a string
+
+
+=end text
+
+=back
+
+
+
+=head2 RepoRegistrationStatus
+
+=over 4
+
+
+
+=item Description
+
+Progress of repository registration.
+stage - one of 'queued', 'cloning', 'validating', 'storing', 'indexing',
+    'done' or 'error';
+module_name - defined after repository is cloned;
+files_total, files_stored - progress of storing files into database;
+version - version timestamp of registered repository (for 'done' stage);
+error - error message (for 'error' stage);
+queued_epoch_ms, finished_epoch_ms - time of queueing and finishing.
+
+
+=item Definition
+
+=begin html
+
+<pre>
+a reference to a hash where the following keys are defined:
+git_url has a value which is a string
+git_commit_hash has a value which is a string
+module_name has a value which is a string
+stage has a value which is a string
+files_total has a value which is an int
+files_stored has a value which is an int
+version has a value which is an int
+error has a value which is a string
+queued_epoch_ms has a value which is an int
+finished_epoch_ms has a value which is an int
+
+</pre>
+
+=end html
+
+=begin text
+
+a reference to a hash where the following keys are defined:
+git_url has a value which is a string
+git_commit_hash has a value which is a string
+module_name has a value which is a string
+stage has a value which is a string
+files_total has a value which is an int
+files_stored has a value which is an int
+version has a value which is an int
+error has a value which is a string
+queued_epoch_ms has a value which is an int
+finished_epoch_ms has a value which is an int
+
+
+=end text
+
+=back
+
+
+
 =head2 DisableRepoParams
 
 =over 4
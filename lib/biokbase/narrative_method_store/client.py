@@ -46,10 +46,15 @@ class NarrativeMethodStore(object):
         """
         Simply check the status of this service to see what Spec repository it is
         using, and what commit it is on
-        :returns: instance of type "Status" -> structure: parameter
-           "git_spec_url" of String, parameter "git_spec_branch" of String,
-           parameter "git_spec_commit" of String, parameter "update_interval"
-           of String
+        :returns: instance of type "Status" (index_generation - number of
+           times the index of methods, apps and types was built or patched
+           since service start; last_refresh_duration_ms - time (in
+           milliseconds) spent on last build or patch of the index.) ->
+           structure: parameter "git_spec_url" of String, parameter
+           "git_spec_branch" of String, parameter "git_spec_commit" of
+           String, parameter "update_interval" of String, parameter
+           "index_generation" of Long, parameter "last_refresh_duration_ms"
+           of Long
         """
         return self._client.call_method(
             'NarrativeMethodStore.status',
@@ -2252,6 +2257,32 @@ class NarrativeMethodStore(object):
             'NarrativeMethodStore.register_repo',
             [params], self._service_ver, context)
 
+    def get_repo_registration_status(self, params, context=None):
+        """
+        Returns queued, running and recently finished repository registrations
+        (all of them for admins, registrations submitted by caller for others).
+        :param params: instance of type "GetRepoRegistrationStatusParams"
+           (git_url - optional filter by repository url.) -> structure:
+           parameter "git_url" of String
+        :returns: instance of list of type "RepoRegistrationStatus" (Progress
+           of repository registration. stage - one of 'queued', 'cloning',
+           'validating', 'storing', 'indexing', 'done' or 'error';
+           module_name - defined after repository is cloned; files_total,
+           files_stored - progress of storing files into database; version -
+           version timestamp of registered repository (for 'done' stage);
+           error - error message (for 'error' stage); queued_epoch_ms,
+           finished_epoch_ms - time of queueing and finishing.) -> structure:
+           parameter "git_url" of String, parameter "git_commit_hash" of
+           String, parameter "module_name" of String, parameter "stage" of
+           String, parameter "files_total" of Long, parameter "files_stored"
+           of Long, parameter "version" of Long, parameter "error" of String,
+           parameter "queued_epoch_ms" of Long, parameter
+           "finished_epoch_ms" of Long
+        """
+        return self._client.call_method(
+            'NarrativeMethodStore.get_repo_registration_status',
+            [params], self._service_ver, context)
+
     def disable_repo(self, params, context=None):
         """
         :param params: instance of type "DisableRepoParams" -> structure:
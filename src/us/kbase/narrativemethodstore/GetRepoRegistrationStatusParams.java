@@ -0,0 +1,61 @@
+package us.kbase.narrativemethodstore;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Generated;
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+
+/**
+ * <p>Original spec-file type: GetRepoRegistrationStatusParams</p>
+ * <pre>
+ * git_url - optional filter by repository url.
+ * </pre>
+ * 
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Generated("com.googlecode.jsonschema2pojo")
+@JsonPropertyOrder({
+    "git_url"
+})
+public class GetRepoRegistrationStatusParams {
+
+    @JsonProperty("git_url")
+    private String gitUrl;
+    private Map<String, Object> additionalProperties = new HashMap<String, Object>();
+
+    @JsonProperty("git_url")
+    public String getGitUrl() {
+        return gitUrl;
+    }
+
+    @JsonProperty("git_url")
+    public void setGitUrl(String gitUrl) {
+        this.gitUrl = gitUrl;
+    }
+
+    public GetRepoRegistrationStatusParams withGitUrl(String gitUrl) {
+        this.gitUrl = gitUrl;
+        return this;
+    }
+
+    @JsonAnyGetter
+    public Map<String, Object> getAdditionalProperties() {
+        return this.additionalProperties;
+    }
+
+    @JsonAnySetter
+    public void setAdditionalProperties(String name, Object value) {
+        this.additionalProperties.put(name, value);
+    }
+
+    @Override
+    public String toString() {
+        return ((((("GetRepoRegistrationStatusParams"+" [gitUrl=")+ gitUrl)+", additionalProperties=")+ additionalProperties)+"]");
+    }
+
+}
@@ -3,25 +3,47 @@ package us.kbase.narrativemethodstore;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.io.IOUtils;
+import org.eclipse.jetty.continuation.Continuation;
+import org.eclipse.jetty.continuation.ContinuationSupport;
+import org.eclipse.jetty.io.nio.DirectNIOBuffer;
+import org.eclipse.jetty.server.HttpConnection;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import us.kbase.narrativemethodstore.db.FilePointer;
 import us.kbase.narrativemethodstore.db.github.LocalGitDB;
 import us.kbase.narrativemethodstore.db.github.RepoTag;
 
 public class ImageServlet extends HttpServlet {
 	
 	private static final long serialVersionUID = 1L;
+	
+	// Default max-age (in seconds) for images requested by git commit hash tag
+	private static final long DEFAULT_IMMUTABLE_MAX_AGE = 24 * 60 * 60;
+	private static final int IMAGE_QUEUE_PER_THREAD = 50;
+	private static final long ASYNC_TIMEOUT_MS = 10 * 60 * 1000;
+	
+	private transient ExecutorService imagePool = null;
 
 	public static void main(String[] args) throws Exception {
 		int port = 8888;
@@ -53,7 +75,106 @@ public class ImageServlet extends HttpServlet {
 	}
 
 	@Override
-	public void doGet(HttpServletRequest request, HttpServletResponse response)  
+	public void init() throws ServletException {
+		int threads = getImageThreads();
+		if (threads > 0) {
+			imagePool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<Runnable>(threads * IMAGE_QUEUE_PER_THREAD),
+					new ThreadFactoryBuilder().setDaemon(true)
+					.setNameFormat("NarrativeMethodStore-image-%d").build());
+		}
+	}
+	
+	@Override
+	public void destroy() {
+		if (imagePool != null)
+			imagePool.shutdownNow();
+	}
+	
+	private static int getImageThreads() {
+		String ret = null;
+		try {
+			ret = NarrativeMethodStoreServer.config().get(NarrativeMethodStoreServer.CFG_PROP_IMAGE_THREADS);
+		} catch (Exception ex) {
+			System.err.println(ex.getMessage());
+		}
+		if (ret == null || ret.trim().isEmpty())
+			return 0;
+		try {
+			return Integer.parseInt(ret.trim());
+		} catch (NumberFormatException ex) {
+			return 0;
+		}
+	}
+	
+	/**
+	 * Request is suspended (if container supports it) and served by dedicated 
+	 * bounded pool so that slow storage or slow clients don't hold container 
+	 * threads needed by RPC servlet.
+	 */
+	@Override
+	public void doGet(final HttpServletRequest request, HttpServletResponse response)  
+            throws IOException { 
+		final Continuation continuation = imagePool == null ? null : suspend(request, response);
+		if (continuation == null && isExpired(request))
+			return;  // background thread hasn't finished writing response in time
+		if (continuation == null) {
+			serveImage(request, response);
+			return;
+		}
+		try {
+			imagePool.execute(new Runnable() {
+				@Override
+				public void run() {
+					HttpServletResponse asyncResponse = (HttpServletResponse)continuation.getServletResponse();
+					try {
+						serveImage(request, asyncResponse);
+					} catch (Throwable ex) {
+						System.err.println("[" + new Date() + "] NarrativeMethodStore.ImageServlet: " +
+								"error serving image: " + ex.getMessage());
+						try {
+							if (!asyncResponse.isCommitted())
+								asyncResponse.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+						} catch (IOException ignore) {}
+					} finally {
+						continuation.complete();
+					}
+				}
+			});
+		} catch (RejectedExecutionException ex) {
+			response.setHeader("Retry-After", "1");
+			response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			continuation.complete();
+		}
+	}
+	
+	private boolean isExpired(HttpServletRequest request) {
+		if (imagePool == null)
+			return false;
+		try {
+			return ContinuationSupport.getContinuation(request).isExpired();
+		} catch (IllegalStateException ex) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Suspends request or returns null in case container doesn't support it.
+	 */
+	private static Continuation suspend(HttpServletRequest request, HttpServletResponse response) {
+		try {
+			Continuation ret = ContinuationSupport.getContinuation(request);
+			if (!ret.isInitial())
+				return null;
+			ret.setTimeout(ASYNC_TIMEOUT_MS);
+			ret.suspend(response);
+			return ret;
+		} catch (IllegalStateException ex) {
+			return null;
+		}
+	}
+	
+	private void serveImage(HttpServletRequest request, HttpServletResponse response)  
             throws IOException { 
 		String methodId = request.getParameter("method_id");
 		String appId = request.getParameter("app_id");
@@ -82,10 +203,18 @@ public class ImageServlet extends HttpServlet {
 		String imageExt = imageName.contains(".") ? imageName.substring(imageName.indexOf('.') + 1).toLowerCase() : "png";
 		if (methodId != null && methodId.contains("/")) {
             String[] moduleNameAndMethodId = methodId.split("/");
-            OutputStream os = response.getOutputStream();
 		    try {
 		        LocalGitDB db = NarrativeMethodStoreServer.getLocalGitDB();
-		        db.saveScreenshotIntoStream(moduleNameAndMethodId[0], moduleNameAndMethodId[1], imageName, tag, os);
+		        FilePointer fp = db.getScreenshot(moduleNameAndMethodId[0], moduleNameAndMethodId[1], imageName, tag);
+		        setupResponseHeaders(request, response);
+		        setupCacheHeaders(response, tag);
+		        // File id is changed every time content is changed
+		        String etag = fp.getFileId() == null ? null : "\"" + fp.getFileId().getId() + "\"";
+		        if (checkNotModified(request, response, etag, -1))
+		            return;
+		        response.setContentType("image/" + imageExt);
+		        response.setHeader("Content-Length", String.valueOf(fp.length()));
+		        db.saveFileIntoStream(fp, response.getOutputStream());
 		    } catch (Exception ex) {
 		        throw new IllegalStateException(ex);
 		    }
@@ -108,10 +237,164 @@ public class ImageServlet extends HttpServlet {
 		    }
 		    File imageFile = new File(new File(innerDir, "img"), imageName);
 		    setupResponseHeaders(request, response);
+		    setupCacheHeaders(response, null);
+		    long lastModified = imageFile.lastModified();
+		    String etag = "\"" + Long.toHexString(imageFile.length()) + "-" + 
+		            Long.toHexString(lastModified) + "\"";
+		    if (checkNotModified(request, response, etag, lastModified))
+		        return;
 		    response.setContentType("image/" + imageExt);
-		    OutputStream os = response.getOutputStream();
-		    InputStream is = new FileInputStream(imageFile);
-		    IOUtils.copy(is, os);
+		    sendFile(request, response, imageFile, etag);
+		}
+	}
+	
+	/**
+	 * Sends whole file or single byte range of it (Range header). Under Jetty the
+	 * range is memory-mapped and handed to connector as direct buffer, so that
+	 * content isn't copied through heap buffers. Other containers get it copied
+	 * into servlet output stream.
+	 */
+	public static void sendFile(HttpServletRequest request, HttpServletResponse response,
+			File file, String etag) throws IOException {
+		FileInputStream is = new FileInputStream(file);
+		try {
+			FileChannel channel = is.getChannel();
+			long length = channel.size();
+			long start = 0;
+			long end = length - 1;
+			response.setHeader("Accept-Ranges", "bytes");
+			String range = request.getHeader("Range");
+			String ifRange = request.getHeader("If-Range");
+			if (range != null && (ifRange == null || ifRange.equals(etag))) {
+				long[] startEnd = parseRange(range, length);
+				if (startEnd != null && startEnd.length == 0) {
+					response.setHeader("Content-Range", "bytes */" + length);
+					response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+					return;
+				}
+				if (startEnd != null) {
+					start = startEnd[0];
+					end = startEnd[1];
+					response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+					response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+				}
+			}
+			long count = end - start + 1;
+			response.setHeader("Content-Length", String.valueOf(count));
+			ServletOutputStream out = response.getOutputStream();
+			if (out instanceof HttpConnection.Output && count > 0 && count <= Integer.MAX_VALUE) {
+				// mapping stays valid after channel is closed
+				MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, start, count);
+				((HttpConnection.Output)out).sendContent(new DirectNIOBuffer(region, true));
+				return;
+			}
+			WritableByteChannel target = Channels.newChannel(out);
+			long pos = start;
+			while (pos <= end) {
+				long sent = channel.transferTo(pos, end + 1 - pos, target);
+				if (sent <= 0)
+					break;
+				pos += sent;
+			}
+		} finally {
+			is.close();
+		}
+	}
+	
+	/**
+	 * Parses single range "bytes=start-end" (or suffix "bytes=-N"). Returns null if
+	 * range should be ignored (whole file is sent) or empty array if range is not
+	 * satisfiable.
+	 */
+	public static long[] parseRange(String range, long length) {
+		if (!range.startsWith("bytes=") || range.contains(","))
+			return null;
+		String spec = range.substring(6).trim();
+		int dash = spec.indexOf('-');
+		if (dash < 0)
+			return null;
+		try {
+			long start;
+			long end;
+			if (dash == 0) {
+				long suffix = Long.parseLong(spec.substring(1).trim());
+				if (suffix <= 0)
+					return new long[0];
+				start = Math.max(0, length - suffix);
+				end = length - 1;
+			} else {
+				start = Long.parseLong(spec.substring(0, dash).trim());
+				String endText = spec.substring(dash + 1).trim();
+				end = endText.isEmpty() ? length - 1 : Math.min(length - 1, Long.parseLong(endText));
+			}
+			if (start >= length || start > end)
+				return new long[0];
+			return new long[] {start, end};
+		} catch (NumberFormatException ex) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Images requested by git commit hash never change so they can be cached by
+	 * browsers and proxies, others should be revalidated with ETag.
+	 */
+	private static void setupCacheHeaders(HttpServletResponse response, String tag) {
+		if (tag != null && RepoTag.valueOf(tag).isGitCommitHash()) {
+			response.setHeader("Cache-Control", "public, max-age=" + getImmutableMaxAge());
+		} else {
+			response.setHeader("Cache-Control", "no-cache");
+		}
+	}
+	
+	private static long getImmutableMaxAge() {
+		String ret = null;
+		try {
+			ret = NarrativeMethodStoreServer.config().get(NarrativeMethodStoreServer.CFG_PROP_IMAGE_CACHE_MAX_AGE);
+		} catch (Exception ex) {
+			System.err.println(ex.getMessage());
+		}
+		if (ret == null || ret.trim().isEmpty())
+			return DEFAULT_IMMUTABLE_MAX_AGE;
+		try {
+			return Long.parseLong(ret.trim());
+		} catch (NumberFormatException ex) {
+			return DEFAULT_IMMUTABLE_MAX_AGE;
 		}
 	}
+	
+	/**
+	 * Sets validator headers and sends 304 response (returning true) in case client
+	 * already has current version of image. If-None-Match items are compared 
+	 * weakly (W/ prefix is ignored).
+	 */
+	public static boolean checkNotModified(HttpServletRequest request, 
+			HttpServletResponse response, String etag, long lastModified) {
+		if (etag != null)
+			response.setHeader("ETag", etag);
+		if (lastModified > 0)
+			response.setDateHeader("Last-Modified", lastModified);
+		boolean notModified = false;
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			if (etag != null)
+				for (String item : ifNoneMatch.split(","))
+					if (item.trim().equals("*") || stripWeak(item.trim()).equals(etag))
+						notModified = true;
+		} else if (lastModified > 0) {
+			try {
+				long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+				// HTTP dates have second precision
+				notModified = ifModifiedSince >= 0 && 
+						ifModifiedSince >= lastModified / 1000 * 1000;
+			} catch (IllegalArgumentException ignore) {}
+		}
+		if (notModified)
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		return notModified;
+	}
+	
+	private static String stripWeak(String etag) {
+		return etag.startsWith("W/") ? etag.substring(2) : etag;
+	}
 }
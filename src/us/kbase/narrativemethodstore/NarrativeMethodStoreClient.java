@@ -617,6 +617,25 @@ public class NarrativeMethodStoreClient {
         caller.jsonrpcCall("NarrativeMethodStore.register_repo", args, retType, false, true, jsonRpcContext, this.serviceVersion);
     }
 
+    /**
+     * <p>Original spec-file function name: get_repo_registration_status</p>
+     * <pre>
+     * Returns queued, running and recently finished repository registrations
+     * (all of them for admins, registrations submitted by caller for others).
+     * </pre>
+     * @param   params   instance of type {@link us.kbase.narrativemethodstore.GetRepoRegistrationStatusParams GetRepoRegistrationStatusParams}
+     * @return   instance of list of type {@link us.kbase.narrativemethodstore.RepoRegistrationStatus RepoRegistrationStatus}
+     * @throws IOException if an IO exception occurs
+     * @throws JsonClientException if a JSON RPC exception occurs
+     */
+    public List<RepoRegistrationStatus> getRepoRegistrationStatus(GetRepoRegistrationStatusParams params, RpcContext... jsonRpcContext) throws IOException, JsonClientException {
+        List<Object> args = new ArrayList<Object>();
+        args.add(params);
+        TypeReference<List<List<RepoRegistrationStatus>>> retType = new TypeReference<List<List<RepoRegistrationStatus>>>() {};
+        List<List<RepoRegistrationStatus>> res = caller.jsonrpcCall("NarrativeMethodStore.get_repo_registration_status", args, retType, true, true, jsonRpcContext, this.serviceVersion);
+        return res.get(0);
+    }
+
     /**
      * <p>Original spec-file function name: disable_repo</p>
      * <pre>
@@ -14,20 +14,32 @@ import us.kbase.common.service.RpcContext;
 import us.kbase.common.service.Tuple4;
 
 //BEGIN_HEADER
+import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Pattern;
 
 import org.ini4j.Ini;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 import us.kbase.auth.AuthService;
+import us.kbase.common.service.UObject;
+import us.kbase.narrativemethodstore.db.FileContentCache;
 import us.kbase.narrativemethodstore.db.NarrativeCategoriesIndex;
 import us.kbase.narrativemethodstore.db.ServiceUrlTemplateEvaluater;
 import us.kbase.narrativemethodstore.db.Validator;
+import us.kbase.narrativemethodstore.db.github.GitBackend;
 import us.kbase.narrativemethodstore.db.github.LocalGitDB;
+import us.kbase.narrativemethodstore.db.github.ProcessGitBackend;
+import us.kbase.narrativemethodstore.db.github.RepoRegistrationQueue.RegistrationJob;
 import us.kbase.narrativemethodstore.db.github.RepoTag;
 import us.kbase.narrativemethodstore.db.mongo.MongoDynamicRepoDB;
 //END_HEADER
@@ -68,13 +80,26 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
     public static final String      CFG_PROP_DEFAULT_TAG = "method-spec-default-tag";
     public static final String CFG_PROP_AUTH_SERVICE_URL = "auth-service-url";
     public static final String    CFG_PROP_AUTH_INSECURE = "auth-service-url-allow-insecure";
+    public static final String CFG_PROP_INDEX_PARALLELISM = "method-spec-index-parallelism";
+    public static final String CFG_PROP_IMAGE_CACHE_MAX_AGE = "method-spec-image-cache-max-age";
+    public static final String  CFG_PROP_IMAGE_CACHE_SIZE = "method-spec-image-cache-size-mb";
+    public static final String CFG_PROP_IMAGE_CACHE_OFF_HEAP = "method-spec-image-cache-off-heap";
+    public static final String CFG_PROP_WARM_START = "method-spec-warm-start";
+    public static final String     CFG_PROP_IMAGE_THREADS = "method-spec-image-threads";
+    public static final String CFG_PROP_REGISTRATION_THREADS = "method-spec-registration-threads";
+    public static final String CFG_PROP_BATCH_LOAD_THREADS = "method-spec-batch-load-threads";
+    public static final String    CFG_PROP_GIT_BACKEND = "method-spec-git-backend";
+    public static final String   CFG_PROP_LIST_CACHE_SIZE = "method-spec-list-cache-size";
+    
+    public static final int DEFAULT_LIST_CACHE_SIZE = 20;
     
     public static final String VERSION = "0.3.7";
     
     private static Throwable configError = null;
     private static Map<String, String> config = null;
 
-    private static LocalGitDB localGitDB;
+    // published once, readers don't take class lock after that
+    private static volatile LocalGitDB localGitDB;
 
     public static Map<String, String> config() {
     	if (config != null)
@@ -166,6 +191,160 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
     private static String getDefaultTag() {
         return config().get(CFG_PROP_DEFAULT_TAG);
     }
+    private static int getIndexParallelism() {
+        String ret = config().get(CFG_PROP_INDEX_PARALLELISM);
+        if (ret == null || ret.trim().isEmpty())
+            return 0;
+        try {
+            return Integer.parseInt(ret.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalStateException("Parameter " + CFG_PROP_INDEX_PARALLELISM + " is not defined in configuration as integer: " + ret);
+        }
+    }
+    
+    private static int getRegistrationThreads() {
+        String ret = config().get(CFG_PROP_REGISTRATION_THREADS);
+        if (ret == null || ret.trim().isEmpty())
+            return 0;
+        try {
+            return Integer.parseInt(ret.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalStateException("Parameter " + CFG_PROP_REGISTRATION_THREADS + " is not defined in configuration as integer: " + ret);
+        }
+    }
+    
+    private static int getBatchLoadThreads() {
+        String ret = config().get(CFG_PROP_BATCH_LOAD_THREADS);
+        if (ret == null || ret.trim().isEmpty())
+            return 0;
+        try {
+            return Integer.parseInt(ret.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalStateException("Parameter " + CFG_PROP_BATCH_LOAD_THREADS + " is not defined in configuration as integer: " + ret);
+        }
+    }
+    
+    /**
+     * Creates instance of class configured as git backend (it should have public
+     * constructor with URL of spec repo as the only parameter).
+     */
+    private static GitBackend getGitBackend(URL gitRepoUrl) {
+        String ret = config().get(CFG_PROP_GIT_BACKEND);
+        if (ret == null || ret.trim().isEmpty())
+            return new ProcessGitBackend(gitRepoUrl);
+        try {
+            return Class.forName(ret.trim()).asSubclass(GitBackend.class)
+                    .getConstructor(URL.class).newInstance(gitRepoUrl);
+        } catch (Exception ex) {
+            throw new IllegalStateException("Parameter " + CFG_PROP_GIT_BACKEND + " is not defined in configuration as git backend class: " + ret, ex);
+        }
+    }
+    
+    private static int getImageCacheSizeMb() {
+        String ret = config().get(CFG_PROP_IMAGE_CACHE_SIZE);
+        if (ret == null || ret.trim().isEmpty())
+            return 0;
+        try {
+            return Integer.parseInt(ret.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalStateException("Parameter " + CFG_PROP_IMAGE_CACHE_SIZE + " is not defined in configuration as integer: " + ret);
+        }
+    }
+    
+    private static int getListCacheSize() {
+        String ret = config().get(CFG_PROP_LIST_CACHE_SIZE);
+        if (ret == null || ret.trim().isEmpty())
+            return DEFAULT_LIST_CACHE_SIZE;
+        try {
+            return Integer.parseInt(ret.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalStateException("Parameter " + CFG_PROP_LIST_CACHE_SIZE + " is not defined in configuration as integer: " + ret);
+        }
+    }
+    
+    /**
+     * Results of listing calls keyed by index generation they were built for, 
+     * results of older generations are evicted by size limit (null if caching is 
+     * switched off). Size is number of results since measuring them would mean 
+     * serializing each of them one more time.
+     */
+    private final Cache<String, Object> listResultCache;
+    
+    private static Cache<String, Object> createListResultCache(int size) {
+        if (size <= 0)
+            return null;
+        return CacheBuilder.newBuilder().maximumSize(size).build();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <T> T getCachedListResult(String rpcName, Object params, 
+            final Callable<T> builder) throws Exception {
+        if (listResultCache == null)
+            return builder.call();
+        long generation = getLocalGitDB().getIndexGeneration();
+        String key = rpcName + ":" + generation + ":" + UObject.transformObjectToString(params);
+        try {
+            return (T)listResultCache.get(key, new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return builder.call();
+                }
+            });
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof Exception ? (Exception)ex.getCause() : ex;
+        } catch (UncheckedExecutionException ex) {
+            throw ex.getCause() instanceof Exception ? (Exception)ex.getCause() : ex;
+        }
+    }
+    
+    private static Tuple4<Map<String,Category>, Map<String,MethodBriefInfo>, Map<String,AppBriefInfo>, 
+            Map<String,TypeInfo>> listCategoriesUncached(ListCategoriesParams params) throws Exception {
+        Map<String,Category> return1 = null;
+        Map<String,MethodBriefInfo> return2 = null;
+        Map<String,AppBriefInfo> return3 = null;
+        Map<String,TypeInfo> return4 = null;
+        boolean returnLoadedMethods = false;
+        if(params.getLoadMethods()!=null) {
+        	if(params.getLoadMethods()==1) {
+        		returnLoadedMethods = true;
+        	}
+        }
+        boolean returnLoadedApps = false;
+        if(params.getLoadApps()!=null) {
+        	if(params.getLoadApps()==1) {
+        		returnLoadedApps = true;
+        	}
+        }
+        boolean returnLoadedTypes = false;
+        if(params.getLoadTypes()!=null) {
+        	if(params.getLoadTypes()==1) {
+        		returnLoadedTypes = true;
+        	}
+        }
+        NarrativeCategoriesIndex narCatIndex = getLocalGitDB().getCategoriesIndex();
+        return1 = narCatIndex.getCategories();
+        if(returnLoadedMethods) {
+        	return2 = narCatIndex.getMethods(params.getTag());
+        } else {
+        	return2 = new HashMap<String,MethodBriefInfo>();
+        }
+        if (returnLoadedApps) {
+        	return3 = narCatIndex.getApps();
+        } else {
+        	return3 = new HashMap<String, AppBriefInfo>();
+        }
+        if (returnLoadedTypes) {
+        	return4 = narCatIndex.getTypes();
+        } else {
+        	return4 = new HashMap<String, TypeInfo>();
+        }
+        Tuple4<Map<String,Category>, Map<String,MethodBriefInfo>, Map<String,AppBriefInfo>, Map<String,TypeInfo>> ret = new Tuple4<Map<String,Category>, Map<String,MethodBriefInfo>, Map<String,AppBriefInfo>, Map<String,TypeInfo>>();
+        ret.setE1(return1);
+        ret.setE2(return2);
+        ret.setE3(return3);
+        ret.setE4(return4);
+        return ret;
+    }
     
     private static <T> List<T> trim(List<T> data, ListParams params) {
     	if (params.getOffset() == null && params.getLimit() == null)
@@ -177,9 +356,15 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
     	return data.subList(from, to);
     }
     
-    public static synchronized LocalGitDB getLocalGitDB() throws Exception {
+    public static LocalGitDB getLocalGitDB() throws Exception {
+        LocalGitDB ret = localGitDB;
+        if (ret != null)
+            return ret;
+        return initLocalGitDB();
+    }
+    
+    private static synchronized LocalGitDB initLocalGitDB() throws Exception {
         if (localGitDB == null) {
-            // TODO: Make sure LocalGitDB doesn't require synchronization for when shared between servlet threads (including ImageServlet).
             System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_GIT_REPO +" = " + getGitRepo());
             System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_GIT_BRANCH +" = " + getGitBranch());
             System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_GIT_LOCAL_DIR +" = " + getGitLocalDir());
@@ -220,6 +405,25 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
             System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_DEFAULT_TAG +" = " + (defaultTag == null ? "<not-set> ('dev' will be used)" : defaultTag));
             if (defaultTag == null)
                 defaultTag = "dev";
+            int indexParallelism = getIndexParallelism();
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_INDEX_PARALLELISM +" = " + 
+                    (indexParallelism > 0 ? "" + indexParallelism : "<not-set> (number of processors will be used)"));
+            int imageCacheSizeMb = getImageCacheSizeMb();
+            boolean imageCacheOffHeap = "true".equals(config().get(CFG_PROP_IMAGE_CACHE_OFF_HEAP));
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_IMAGE_CACHE_SIZE +" = " + 
+                    (imageCacheSizeMb > 0 ? imageCacheSizeMb + (imageCacheOffHeap ? " (off-heap)" : "") : "<not-set> (no caching)"));
+            int registrationThreads = getRegistrationThreads();
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_REGISTRATION_THREADS +" = " + 
+                    (registrationThreads > 0 ? "" + registrationThreads : "<not-set> (" + LocalGitDB.DEFAULT_REGISTRATION_THREADS + " threads will be used)"));
+            int batchLoadThreads = getBatchLoadThreads();
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_BATCH_LOAD_THREADS +" = " + 
+                    (batchLoadThreads > 0 ? "" + batchLoadThreads : "<not-set> (index parallelism will be used)"));
+            boolean warmStart = "true".equals(config().get(CFG_PROP_WARM_START));
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_WARM_START +" = " + warmStart);
+            URL gitRepoUrl = new URL(getGitRepo());
+            GitBackend gitBackend = getGitBackend(gitRepoUrl);
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_GIT_BACKEND +" = " + 
+                    gitBackend.getClass().getName());
             String authServiceUrl = config().get(CFG_PROP_AUTH_SERVICE_URL);
             if (authServiceUrl == null) {
                 throw new IllegalStateException("Parameter " + CFG_PROP_AUTH_SERVICE_URL + " is not defined in configuration");
@@ -239,10 +443,16 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
                     shockToken = authService.validateToken(shockTokenText);
                 }
             }
-            localGitDB = new LocalGitDB(new URL(getGitRepo()), getGitBranch(), new File(getGitLocalDir()), getGitRefreshRate(), getCacheSize(), 
-                    new MongoDynamicRepoDB(getMongoHost(), getMongoDbname(), dbUser, dbPwd, adminUsers, mongoRO, 
-                            shockUrl == null ? null : new URL(shockUrl), shockToken), new File(getTempDir()),
-                            new ServiceUrlTemplateEvaluater(endpointHost, endpointBase), RepoTag.valueOf(defaultTag));
+            MongoDynamicRepoDB dynamicRepoDB = new MongoDynamicRepoDB(getMongoHost(), getMongoDbname(), 
+                    dbUser, dbPwd, adminUsers, mongoRO, shockUrl == null ? null : new URL(shockUrl), shockToken);
+            // files stored in older formats are converted in background
+            dynamicRepoDB.startFileStorageMigration();
+            localGitDB = new LocalGitDB(gitRepoUrl, getGitBranch(), new File(getGitLocalDir()), getGitRefreshRate(), getCacheSize(), 
+                    dynamicRepoDB, new File(getTempDir()),
+                            new ServiceUrlTemplateEvaluater(endpointHost, endpointBase), RepoTag.valueOf(defaultTag),
+                            indexParallelism, imageCacheSizeMb > 0 ? 
+                                    new FileContentCache(imageCacheSizeMb * 1024L * 1024L, imageCacheOffHeap) : null, 
+                            warmStart, registrationThreads, batchLoadThreads, gitBackend);
         }
         return localGitDB;
     }
@@ -252,6 +462,10 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         super("NarrativeMethodStore");
         //BEGIN_CONSTRUCTOR
         getLocalGitDB();
+        int listCacheSize = getListCacheSize();
+        System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_LIST_CACHE_SIZE +" = " + 
+                (listCacheSize > 0 ? "" + listCacheSize : "0 (no caching)"));
+        listResultCache = createListResultCache(listCacheSize);
         //END_CONSTRUCTOR
     }
 
@@ -285,11 +499,14 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         Status returnVal = null;
         //BEGIN status
         config();
+        LocalGitDB db = getLocalGitDB();
         returnVal = new Status()
         				.withGitSpecUrl(getGitRepo())
         				.withGitSpecBranch(getGitBranch())
-        				.withGitSpecCommit(getLocalGitDB().getCommitInfo())
-        				.withUpdateInterval(Integer.toString(getGitRefreshRate()));
+        				.withGitSpecCommit(db.getCommitInfo())
+        				.withUpdateInterval(Integer.toString(getGitRefreshRate()))
+        				.withIndexGeneration(db.getIndexGeneration())
+        				.withLastRefreshDurationMs(db.getLastRefreshDuration());
         //END status
         return returnVal;
     }
@@ -309,41 +526,20 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         Map<String,TypeInfo> return4 = null;
         //BEGIN list_categories
         config();
-        boolean returnLoadedMethods = false;
-        if(params.getLoadMethods()!=null) {
-        	if(params.getLoadMethods()==1) {
-        		returnLoadedMethods = true;
-        	}
-        }
-        boolean returnLoadedApps = false;
-        if(params.getLoadApps()!=null) {
-        	if(params.getLoadApps()==1) {
-        		returnLoadedApps = true;
-        	}
-        }
-        boolean returnLoadedTypes = false;
-        if(params.getLoadTypes()!=null) {
-        	if(params.getLoadTypes()==1) {
-        		returnLoadedTypes = true;
-        	}
-        }
-        NarrativeCategoriesIndex narCatIndex = getLocalGitDB().getCategoriesIndex();
-        return1 = narCatIndex.getCategories();
-        if(returnLoadedMethods) {
-        	return2 = narCatIndex.getMethods(params.getTag());
-        } else {
-        	return2 = new HashMap<String,MethodBriefInfo>();
-        }
-        if (returnLoadedApps) {
-        	return3 = narCatIndex.getApps();
-        } else {
-        	return3 = new HashMap<String, AppBriefInfo>();
-        }
-        if (returnLoadedTypes) {
-        	return4 = narCatIndex.getTypes();
-        } else {
-        	return4 = new HashMap<String, TypeInfo>();
-        }
+        final ListCategoriesParams listParams = params;
+        Tuple4<Map<String,Category>, Map<String,MethodBriefInfo>, Map<String,AppBriefInfo>, Map<String,TypeInfo>> cached =
+                getCachedListResult("list_categories", params, new Callable<Tuple4<Map<String,Category>, 
+                        Map<String,MethodBriefInfo>, Map<String,AppBriefInfo>, Map<String,TypeInfo>>>() {
+            @Override
+            public Tuple4<Map<String,Category>, Map<String,MethodBriefInfo>, Map<String,AppBriefInfo>, 
+                    Map<String,TypeInfo>> call() throws Exception {
+                return listCategoriesUncached(listParams);
+            }
+        });
+        return1 = cached.getE1();
+        return2 = cached.getE2();
+        return3 = cached.getE3();
+        return4 = cached.getE4();
         //END list_categories
         Tuple4<Map<String,Category>, Map<String,MethodBriefInfo>, Map<String,AppBriefInfo>, Map<String,TypeInfo>> returnVal = new Tuple4<Map<String,Category>, Map<String,MethodBriefInfo>, Map<String,AppBriefInfo>, Map<String,TypeInfo>>();
         returnVal.setE1(return1);
@@ -388,8 +584,14 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<MethodBriefInfo> returnVal = null;
         //BEGIN list_methods
         config();
-        returnVal = new ArrayList<MethodBriefInfo>(getLocalGitDB().getCategoriesIndex().getMethods(params.getTag()).values());
-        returnVal = trim(returnVal, params);
+        final ListParams listParams = params;
+        returnVal = getCachedListResult("list_methods", params, new Callable<List<MethodBriefInfo>>() {
+            @Override
+            public List<MethodBriefInfo> call() throws Exception {
+                return trim(getLocalGitDB().getCategoriesIndex().getMethodList(listParams.getTag()), 
+                        listParams);
+            }
+        });
         //END list_methods
         return returnVal;
     }
@@ -406,9 +608,16 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<MethodFullInfo> returnVal = null;
         //BEGIN list_methods_full_info
         config();
-        List<String> methodIds = new ArrayList<String>(getLocalGitDB().listMethodIds(false, params.getTag()));
-        methodIds = trim(methodIds, params);
-        returnVal = getMethodFullInfo(new GetMethodParams().withIds(methodIds).withTag(params.getTag()), jsonRpcContext);
+        final ListParams listParams = params;
+        final RpcContext context = jsonRpcContext;
+        returnVal = getCachedListResult("list_methods_full_info", params, new Callable<List<MethodFullInfo>>() {
+            @Override
+            public List<MethodFullInfo> call() throws Exception {
+                List<String> methodIds = getLocalGitDB().listMethodIds(false, listParams.getTag());
+                methodIds = trim(methodIds, listParams);
+                return getMethodFullInfo(new GetMethodParams().withIds(methodIds).withTag(listParams.getTag()), context);
+            }
+        });
         //END list_methods_full_info
         return returnVal;
     }
@@ -425,9 +634,16 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<MethodSpec> returnVal = null;
         //BEGIN list_methods_spec
         config();
-        List<String> methodIds = new ArrayList<String>(getLocalGitDB().listMethodIds(false, params.getTag()));
-        methodIds = trim(methodIds, params);
-        returnVal = getMethodSpec(new GetMethodParams().withIds(methodIds).withTag(params.getTag()), jsonRpcContext);
+        final ListParams listParams = params;
+        final RpcContext context = jsonRpcContext;
+        returnVal = getCachedListResult("list_methods_spec", params, new Callable<List<MethodSpec>>() {
+            @Override
+            public List<MethodSpec> call() throws Exception {
+                List<String> methodIds = getLocalGitDB().listMethodIds(false, listParams.getTag());
+                methodIds = trim(methodIds, listParams);
+                return getMethodSpec(new GetMethodParams().withIds(methodIds).withTag(listParams.getTag()), context);
+            }
+        });
         //END list_methods_spec
         return returnVal;
     }
@@ -444,9 +660,7 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         Map<String,String> returnVal = null;
         //BEGIN list_method_ids_and_names
         config();
-        returnVal = new TreeMap<String, String>();
-        for (Map.Entry<String, MethodBriefInfo> entry : getLocalGitDB().getCategoriesIndex().getMethods(params.getTag()).entrySet())
-        	returnVal.put(entry.getKey(), entry.getValue().getName());
+        returnVal = getLocalGitDB().getCategoriesIndex().getMethodIdsAndNames(params.getTag());
         //END list_method_ids_and_names
         return returnVal;
     }
@@ -481,9 +695,16 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<AppFullInfo> returnVal = null;
         //BEGIN list_apps_full_info
         config();
-        List<String> appIds = new ArrayList<String>(getLocalGitDB().listAppIds(false));
-        appIds = trim(appIds, params);
-        returnVal = getAppFullInfo(new GetAppParams().withIds(appIds), jsonRpcContext);
+        final ListParams listParams = params;
+        final RpcContext context = jsonRpcContext;
+        returnVal = getCachedListResult("list_apps_full_info", params, new Callable<List<AppFullInfo>>() {
+            @Override
+            public List<AppFullInfo> call() throws Exception {
+                List<String> appIds = new ArrayList<String>(getLocalGitDB().listAppIds(false));
+                appIds = trim(appIds, listParams);
+                return getAppFullInfo(new GetAppParams().withIds(appIds), context);
+            }
+        });
         //END list_apps_full_info
         return returnVal;
     }
@@ -500,9 +721,16 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<AppSpec> returnVal = null;
         //BEGIN list_apps_spec
         config();
-        List<String> appIds = new ArrayList<String>(getLocalGitDB().listAppIds(false));
-        appIds = trim(appIds, params);
-        returnVal = getAppSpec(new GetAppParams().withIds(appIds), jsonRpcContext);
+        final ListParams listParams = params;
+        final RpcContext context = jsonRpcContext;
+        returnVal = getCachedListResult("list_apps_spec", params, new Callable<List<AppSpec>>() {
+            @Override
+            public List<AppSpec> call() throws Exception {
+                List<String> appIds = new ArrayList<String>(getLocalGitDB().listAppIds(false));
+                appIds = trim(appIds, listParams);
+                return getAppSpec(new GetAppParams().withIds(appIds), context);
+            }
+        });
         //END list_apps_spec
         return returnVal;
     }
@@ -576,11 +804,7 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<MethodFullInfo> returnVal = null;
         //BEGIN get_method_full_info
         config();
-        List <String> methodIds = params.getIds();
-        returnVal = new ArrayList<MethodFullInfo>(methodIds.size());
-        for(String id: methodIds) {
-        	returnVal.add(getLocalGitDB().getMethodFullInfo(id, params.getTag()));
-        }
+        returnVal = getLocalGitDB().getMethodFullInfo(params.getIds(), params.getTag());
         //END get_method_full_info
         return returnVal;
     }
@@ -597,10 +821,7 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<MethodSpec> returnVal = null;
         //BEGIN get_method_spec
         config();
-        List<String> methodIds = params.getIds();
-        returnVal = new ArrayList<MethodSpec>(methodIds.size());
-        for (String id : methodIds)
-        	returnVal.add(getLocalGitDB().getMethodSpec(id, params.getTag()));
+        returnVal = getLocalGitDB().getMethodSpec(params.getIds(), params.getTag());
         //END get_method_spec
         return returnVal;
     }
@@ -637,11 +858,7 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<AppFullInfo> returnVal = null;
         //BEGIN get_app_full_info
         config();
-        List <String> appIds = params.getIds();
-        returnVal = new ArrayList<AppFullInfo>(appIds.size());
-        for(String id: appIds) {
-        	returnVal.add(getLocalGitDB().getAppFullInfo(id));
-        }
+        returnVal = getLocalGitDB().getAppFullInfo(params.getIds());
         //END get_app_full_info
         return returnVal;
     }
@@ -658,10 +875,7 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<AppSpec> returnVal = null;
         //BEGIN get_app_spec
         config();
-        List<String> appIds = params.getIds();
-        returnVal = new ArrayList<AppSpec>(appIds.size());
-        for (String id : appIds)
-        	returnVal.add(getLocalGitDB().getAppSpec(id));
+        returnVal = getLocalGitDB().getAppSpec(params.getIds());
         //END get_app_spec
         return returnVal;
     }
@@ -760,10 +974,41 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
     @JsonServerMethod(rpc = "NarrativeMethodStore.register_repo", async=true)
     public void registerRepo(RegisterRepoParams params, AuthToken authPart, RpcContext jsonRpcContext) throws Exception {
         //BEGIN register_repo
+        // Waits for the end of registration: callers expect registered methods to be
+        // listed (and errors to be reported) when this call returns. The wait is 
+        // bounded by registration queue which rejects new jobs when it's full, 
+        // progress can be watched through get_repo_registration_status.
         getLocalGitDB().registerRepo(authPart.getUserName(), params.getGitUrl(), params.getGitCommitHash());
         //END register_repo
     }
 
+    /**
+     * <p>Original spec-file function name: get_repo_registration_status</p>
+     * <pre>
+     * Returns queued, running and recently finished repository registrations
+     * (all of them for admins, registrations submitted by caller for others).
+     * </pre>
+     * @param   params   instance of type {@link us.kbase.narrativemethodstore.GetRepoRegistrationStatusParams GetRepoRegistrationStatusParams}
+     * @return   instance of list of type {@link us.kbase.narrativemethodstore.RepoRegistrationStatus RepoRegistrationStatus}
+     */
+    @JsonServerMethod(rpc = "NarrativeMethodStore.get_repo_registration_status", async=true)
+    public List<RepoRegistrationStatus> getRepoRegistrationStatus(GetRepoRegistrationStatusParams params, AuthToken authPart, RpcContext jsonRpcContext) throws Exception {
+        List<RepoRegistrationStatus> returnVal = null;
+        //BEGIN get_repo_registration_status
+        returnVal = new ArrayList<RepoRegistrationStatus>();
+        for (RegistrationJob job : getLocalGitDB().listRepoRegistrations(
+                authPart.getUserName(), params.getGitUrl())) {
+            returnVal.add(new RepoRegistrationStatus().withGitUrl(job.getUrl())
+                    .withGitCommitHash(job.getCommitHash()).withModuleName(job.getModuleName())
+                    .withStage(job.getStage().name()).withFilesTotal((long)job.getFilesTotal())
+                    .withFilesStored((long)job.getFilesStored()).withVersion(job.getVersion())
+                    .withError(job.getErrorMessage()).withQueuedEpochMs(job.getQueuedTime())
+                    .withFinishedEpochMs(job.getFinishedTime()));
+        }
+        //END get_repo_registration_status
+        return returnVal;
+    }
+
     /**
      * <p>Original spec-file function name: disable_repo</p>
      * <pre>
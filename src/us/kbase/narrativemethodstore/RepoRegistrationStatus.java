@@ -0,0 +1,230 @@
+package us.kbase.narrativemethodstore;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Generated;
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+
+/**
+ * <p>Original spec-file type: RepoRegistrationStatus</p>
+ * <pre>
+ * Progress of repository registration.
+ * stage - one of 'queued', 'cloning', 'validating', 'storing', 'indexing',
+ *     'done' or 'error';
+ * module_name - defined after repository is cloned;
+ * files_total, files_stored - progress of storing files into database;
+ * version - version timestamp of registered repository (for 'done' stage);
+ * error - error message (for 'error' stage);
+ * queued_epoch_ms, finished_epoch_ms - time of queueing and finishing.
+ * </pre>
+ * 
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Generated("com.googlecode.jsonschema2pojo")
+@JsonPropertyOrder({
+    "git_url",
+    "git_commit_hash",
+    "module_name",
+    "stage",
+    "files_total",
+    "files_stored",
+    "version",
+    "error",
+    "queued_epoch_ms",
+    "finished_epoch_ms"
+})
+public class RepoRegistrationStatus {
+
+    @JsonProperty("git_url")
+    private String gitUrl;
+    @JsonProperty("git_commit_hash")
+    private String gitCommitHash;
+    @JsonProperty("module_name")
+    private String moduleName;
+    @JsonProperty("stage")
+    private String stage;
+    @JsonProperty("files_total")
+    private Long filesTotal;
+    @JsonProperty("files_stored")
+    private Long filesStored;
+    @JsonProperty("version")
+    private Long version;
+    @JsonProperty("error")
+    private String error;
+    @JsonProperty("queued_epoch_ms")
+    private Long queuedEpochMs;
+    @JsonProperty("finished_epoch_ms")
+    private Long finishedEpochMs;
+    private Map<String, Object> additionalProperties = new HashMap<String, Object>();
+
+    @JsonProperty("git_url")
+    public String getGitUrl() {
+        return gitUrl;
+    }
+
+    @JsonProperty("git_url")
+    public void setGitUrl(String gitUrl) {
+        this.gitUrl = gitUrl;
+    }
+
+    public RepoRegistrationStatus withGitUrl(String gitUrl) {
+        this.gitUrl = gitUrl;
+        return this;
+    }
+
+    @JsonProperty("git_commit_hash")
+    public String getGitCommitHash() {
+        return gitCommitHash;
+    }
+
+    @JsonProperty("git_commit_hash")
+    public void setGitCommitHash(String gitCommitHash) {
+        this.gitCommitHash = gitCommitHash;
+    }
+
+    public RepoRegistrationStatus withGitCommitHash(String gitCommitHash) {
+        this.gitCommitHash = gitCommitHash;
+        return this;
+    }
+
+    @JsonProperty("module_name")
+    public String getModuleName() {
+        return moduleName;
+    }
+
+    @JsonProperty("module_name")
+    public void setModuleName(String moduleName) {
+        this.moduleName = moduleName;
+    }
+
+    public RepoRegistrationStatus withModuleName(String moduleName) {
+        this.moduleName = moduleName;
+        return this;
+    }
+
+    @JsonProperty("stage")
+    public String getStage() {
+        return stage;
+    }
+
+    @JsonProperty("stage")
+    public void setStage(String stage) {
+        this.stage = stage;
+    }
+
+    public RepoRegistrationStatus withStage(String stage) {
+        this.stage = stage;
+        return this;
+    }
+
+    @JsonProperty("files_total")
+    public Long getFilesTotal() {
+        return filesTotal;
+    }
+
+    @JsonProperty("files_total")
+    public void setFilesTotal(Long filesTotal) {
+        this.filesTotal = filesTotal;
+    }
+
+    public RepoRegistrationStatus withFilesTotal(Long filesTotal) {
+        this.filesTotal = filesTotal;
+        return this;
+    }
+
+    @JsonProperty("files_stored")
+    public Long getFilesStored() {
+        return filesStored;
+    }
+
+    @JsonProperty("files_stored")
+    public void setFilesStored(Long filesStored) {
+        this.filesStored = filesStored;
+    }
+
+    public RepoRegistrationStatus withFilesStored(Long filesStored) {
+        this.filesStored = filesStored;
+        return this;
+    }
+
+    @JsonProperty("version")
+    public Long getVersion() {
+        return version;
+    }
+
+    @JsonProperty("version")
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public RepoRegistrationStatus withVersion(Long version) {
+        this.version = version;
+        return this;
+    }
+
+    @JsonProperty("error")
+    public String getError() {
+        return error;
+    }
+
+    @JsonProperty("error")
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public RepoRegistrationStatus withError(String error) {
+        this.error = error;
+        return this;
+    }
+
+    @JsonProperty("queued_epoch_ms")
+    public Long getQueuedEpochMs() {
+        return queuedEpochMs;
+    }
+
+    @JsonProperty("queued_epoch_ms")
+    public void setQueuedEpochMs(Long queuedEpochMs) {
+        this.queuedEpochMs = queuedEpochMs;
+    }
+
+    public RepoRegistrationStatus withQueuedEpochMs(Long queuedEpochMs) {
+        this.queuedEpochMs = queuedEpochMs;
+        return this;
+    }
+
+    @JsonProperty("finished_epoch_ms")
+    public Long getFinishedEpochMs() {
+        return finishedEpochMs;
+    }
+
+    @JsonProperty("finished_epoch_ms")
+    public void setFinishedEpochMs(Long finishedEpochMs) {
+        this.finishedEpochMs = finishedEpochMs;
+    }
+
+    public RepoRegistrationStatus withFinishedEpochMs(Long finishedEpochMs) {
+        this.finishedEpochMs = finishedEpochMs;
+        return this;
+    }
+
+    @JsonAnyGetter
+    public Map<String, Object> getAdditionalProperties() {
+        return this.additionalProperties;
+    }
+
+    @JsonAnySetter
+    public void setAdditionalProperties(String name, Object value) {
+        this.additionalProperties.put(name, value);
+    }
+
+    @Override
+    public String toString() {
+        return ((((((((((((((((((((((("RepoRegistrationStatus"+" [gitUrl=")+ gitUrl)+", gitCommitHash=")+ gitCommitHash)+", moduleName=")+ moduleName)+", stage=")+ stage)+", filesTotal=")+ filesTotal)+", filesStored=")+ filesStored)+", version=")+ version)+", error=")+ error)+", queuedEpochMs=")+ queuedEpochMs)+", finishedEpochMs=")+ finishedEpochMs)+", additionalProperties=")+ additionalProperties)+"]");
+    }
+
+}
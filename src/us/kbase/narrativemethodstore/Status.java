@@ -13,7 +13,12 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
 /**
  * <p>Original spec-file type: Status</p>
- * 
+ * <pre>
+ * index_generation - number of times the index of methods, apps and types
+ *     was built or patched since service start;
+ * last_refresh_duration_ms - time (in milliseconds) spent on last build or
+ *     patch of the index.
+ * </pre>
  * 
  */
 @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -22,7 +27,9 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
     "git_spec_url",
     "git_spec_branch",
     "git_spec_commit",
-    "update_interval"
+    "update_interval",
+    "index_generation",
+    "last_refresh_duration_ms"
 })
 public class Status {
 
@@ -34,6 +41,10 @@ public class Status {
     private String gitSpecCommit;
     @JsonProperty("update_interval")
     private String updateInterval;
+    @JsonProperty("index_generation")
+    private Long indexGeneration;
+    @JsonProperty("last_refresh_duration_ms")
+    private Long lastRefreshDurationMs;
     private Map<String, Object> additionalProperties = new HashMap<String, Object>();
 
     @JsonProperty("git_spec_url")
@@ -96,6 +107,36 @@ public class Status {
         return this;
     }
 
+    @JsonProperty("index_generation")
+    public Long getIndexGeneration() {
+        return indexGeneration;
+    }
+
+    @JsonProperty("index_generation")
+    public void setIndexGeneration(Long indexGeneration) {
+        this.indexGeneration = indexGeneration;
+    }
+
+    public Status withIndexGeneration(Long indexGeneration) {
+        this.indexGeneration = indexGeneration;
+        return this;
+    }
+
+    @JsonProperty("last_refresh_duration_ms")
+    public Long getLastRefreshDurationMs() {
+        return lastRefreshDurationMs;
+    }
+
+    @JsonProperty("last_refresh_duration_ms")
+    public void setLastRefreshDurationMs(Long lastRefreshDurationMs) {
+        this.lastRefreshDurationMs = lastRefreshDurationMs;
+    }
+
+    public Status withLastRefreshDurationMs(Long lastRefreshDurationMs) {
+        this.lastRefreshDurationMs = lastRefreshDurationMs;
+        return this;
+    }
+
     @JsonAnyGetter
     public Map<String, Object> getAdditionalProperties() {
         return this.additionalProperties;
@@ -108,7 +149,7 @@ public class Status {
 
     @Override
     public String toString() {
-        return ((((((((((("Status"+" [gitSpecUrl=")+ gitSpecUrl)+", gitSpecBranch=")+ gitSpecBranch)+", gitSpecCommit=")+ gitSpecCommit)+", updateInterval=")+ updateInterval)+", additionalProperties=")+ additionalProperties)+"]");
+        return ((((((((((((((("Status"+" [gitSpecUrl=")+ gitSpecUrl)+", gitSpecBranch=")+ gitSpecBranch)+", gitSpecCommit=")+ gitSpecCommit)+", updateInterval=")+ updateInterval)+", indexGeneration=")+ indexGeneration)+", lastRefreshDurationMs=")+ lastRefreshDurationMs)+", additionalProperties=")+ additionalProperties)+"]");
     }
 
 }
@@ -30,6 +30,8 @@ public interface DynamicRepoDB {
     
     public boolean isRepoOwner(String repoModuleName, String userId) throws NarrativeMethodStoreException;
     
+    public boolean isAdmin(String userId);
+    
     public RepoState getRepoState(String repoModuleName) throws NarrativeMethodStoreException;
     
     public void setRepoState(String userId, String repoModuleName, RepoState state) throws NarrativeMethodStoreException;
@@ -40,6 +42,15 @@ public interface DynamicRepoDB {
 
     public FilePointer loadFile(FileId fileId) throws NarrativeMethodStoreException;
     
+    /**
+     * Loads pointers to several files in one request to DB. Pointers are returned in
+     * the same order as IDs. In case withContent is true file content is loaded as
+     * well (except for files stored outside of DB) so that pointers can be streamed
+     * without further requests.
+     */
+    public List<FilePointer> loadFiles(List<FileId> fileIds, boolean withContent) 
+            throws NarrativeMethodStoreException;
+    
     public enum RepoState {
         ready(true), building(true), testing(true), disabled(false);
         
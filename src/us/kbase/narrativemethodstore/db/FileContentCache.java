@@ -0,0 +1,93 @@
+package us.kbase.narrativemethodstore.db;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+
+/**
+ * Cache of content of files stored in dynamic repo database bounded by total
+ * size in bytes. Content of file with given id never changes so cached data
+ * doesn't need to be invalidated. Data can be kept out of heap in direct buffers.
+ */
+public class FileContentCache {
+    private final Cache<String, ByteBuffer> cache;
+    private final long maxFileLength;
+    private final boolean offHeap;
+
+    public FileContentCache(long maxTotalLength, boolean offHeap) {
+        this.cache = CacheBuilder.newBuilder().maximumWeight(maxTotalLength).weigher(
+                new Weigher<String, ByteBuffer>() {
+                    @Override
+                    public int weigh(String fileId, ByteBuffer data) {
+                        return data.capacity();
+                    }
+                }).build();
+        // Each cache segment should be able to keep several files
+        this.maxFileLength = maxTotalLength / 16;
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Returns read-only content of file or null in case file can't be cached
+     * (it's too large or not stored in dynamic repo database).
+     */
+    public ByteBuffer getContent(final FilePointer fp) throws NarrativeMethodStoreException {
+        FileId fileId = fp.getFileId();
+        if (fileId == null || fp.length() > maxFileLength)
+            return null;
+        try {
+            return cache.get(fileId.getId(), new Callable<ByteBuffer>() {
+                @Override
+                public ByteBuffer call() throws Exception {
+                    ByteArrayOutputStream baos = new ByteArrayOutputStream((int)fp.length());
+                    fp.saveToStream(baos);
+                    byte[] data = baos.toByteArray();
+                    if (!offHeap)
+                        return ByteBuffer.wrap(data);
+                    ByteBuffer ret = ByteBuffer.allocateDirect(data.length);
+                    ret.put(data);
+                    ret.flip();
+                    return ret;
+                }
+            }).asReadOnlyBuffer();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof NarrativeMethodStoreException)
+                throw (NarrativeMethodStoreException)ex.getCause();
+            throw new NarrativeMethodStoreException(ex.getCause());
+        } catch (UncheckedExecutionException ex) {
+            throw new NarrativeMethodStoreException(ex.getCause());
+        }
+    }
+
+    /**
+     * Writes file content into stream taking it from cache when possible.
+     */
+    public void saveToStream(FilePointer fp, OutputStream os)
+            throws NarrativeMethodStoreException {
+        ByteBuffer data = getContent(fp);
+        if (data == null) {
+            fp.saveToStream(os);
+            return;
+        }
+        try {
+            Channels.newChannel(os).write(data);
+        } catch (IOException ex) {
+            throw new NarrativeMethodStoreException(ex);
+        }
+    }
+
+    public long size() {
+        return cache.size();
+    }
+}
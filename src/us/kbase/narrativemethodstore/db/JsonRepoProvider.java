@@ -2,6 +2,7 @@ package us.kbase.narrativemethodstore.db;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -13,6 +14,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public class JsonRepoProvider implements RepoProvider {
     private final DynamicRepoDB db;
     private final RepoData data;
+    private final Map<String, FilePointer> preloadedFiles = 
+            Collections.synchronizedMap(new HashMap<String, FilePointer>());
     
     public JsonRepoProvider(DynamicRepoDB db, String jsonString) throws NarrativeMethodStoreException {
         this(db, jsonStringToRepoData(jsonString));
@@ -123,7 +126,7 @@ public class JsonRepoProvider implements RepoProvider {
         checkMethod(methodId, md);
         String fileId = null;
         if (md.screenshotIdToFile != null) {
-            md.screenshotIdToFile.get(screenshotId);
+            fileId = md.screenshotIdToFile.get(screenshotId);
         } else {
             for (FileRef fr : md.imageFileRefs)
                 if (fr.fileName.equals(screenshotId))
@@ -162,6 +165,38 @@ public class JsonRepoProvider implements RepoProvider {
         return fileId == null ? null : fp(fileId);
     }
     
+    @Override
+    public void preloadUINarrativeMethodFiles(List<String> methodIds)
+            throws NarrativeMethodStoreException {
+        List<FileId> specFiles = new ArrayList<FileId>();
+        List<FileId> imageFiles = new ArrayList<FileId>();
+        for (String methodId : methodIds) {
+            MethodData md = data.uiNarrativeMethods.get(methodId);
+            if (md == null)
+                continue;
+            specFiles.add(new FileId(md.specFile));
+            specFiles.add(new FileId(md.displayFile));
+            if (md.screenshotIdToFile != null) {
+                for (String fileId : md.screenshotIdToFile.values())
+                    imageFiles.add(new FileId(fileId));
+            } else if (md.imageFileRefs != null) {
+                for (FileRef fr : md.imageFileRefs)
+                    imageFiles.add(new FileId(fr.innerRef));
+            }
+        }
+        // spec and display are small and will be parsed, images are only checked for existence
+        preload(specFiles, true);
+        preload(imageFiles, false);
+    }
+    
+    private void preload(List<FileId> fileIds, boolean withContent) 
+            throws NarrativeMethodStoreException {
+        if (fileIds.isEmpty())
+            return;
+        for (FilePointer fp : db.loadFiles(fileIds, withContent))
+            preloadedFiles.put(fp.getFileId().getId(), fp);
+    }
+    
     @Override
     public void dispose() throws NarrativeMethodStoreException {
         // Do nothing
@@ -246,7 +281,8 @@ public class JsonRepoProvider implements RepoProvider {
     }
     
     private FilePointer fp(String fileId) throws NarrativeMethodStoreException {
-        return db.loadFile(new FileId(fileId));
+        FilePointer ret = preloadedFiles.get(fileId);
+        return ret != null ? ret : db.loadFile(new FileId(fileId));
     }
     
     public static class RepoData {
@@ -1,6 +1,7 @@
 package us.kbase.narrativemethodstore.db;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -28,6 +29,11 @@ public class NarrativeCategoriesIndex {
     protected Map<String, Exception> dynamicRepoModuleNameToLoadingError;
     protected boolean invalid = false;
     protected final RepoTag defaultTagForGetters;
+    /**
+     * Per-tag views of methods. They are dropped by changes of methods and built
+     * again by buildMethodViews() before index is published to readers.
+     */
+    protected volatile MethodViews methodViews = null;
     
 	public NarrativeCategoriesIndex(RepoTag defaultTagForGetters) {
 		categories = new HashMap<String,Category>();
@@ -39,12 +45,30 @@ public class NarrativeCategoriesIndex {
 	    this.defaultTagForGetters = defaultTagForGetters;
 	}
 	
+	/**
+	 * Creates a copy of other index which can be patched without affecting
+	 * readers of original one.
+	 */
+	public NarrativeCategoriesIndex(NarrativeCategoriesIndex other) {
+	    categories = new HashMap<String, Category>(other.categories);
+	    methods = new TreeMap<MethodId, MethodBriefInfo>(other.methods);
+	    apps = new HashMap<String, AppBriefInfo>(other.apps);
+	    types = new HashMap<String, TypeInfo>(other.types);
+	    dynamicRepoMethods = new TreeSet<MethodId>(other.dynamicRepoMethods);
+	    dynamicRepoModuleNameToLoadingError = new TreeMap<String, Exception>(
+	            other.dynamicRepoModuleNameToLoadingError);
+	    this.defaultTagForGetters = other.defaultTagForGetters;
+	    // views stay valid until methods of the copy are changed
+	    this.methodViews = other.methodViews;
+	}
+	
 	public void updateAllCategories(Map<String,Category> categories) {
 		this.categories = categories;
 	}
 	
 	public void updateAllMethods(Map<MethodId,MethodBriefInfo> methods) {
 		this.methods = methods;
+		this.methodViews = null;
 	}
 
 	public void updateAllApps(Map<String, AppBriefInfo> apps) {
@@ -61,6 +85,44 @@ public class NarrativeCategoriesIndex {
 	    this.dynamicRepoModuleNameToLoadingError = dynamicRepoModuleNameToLoadingError;
 	}
 	
+	/**
+	 * Replaces methods of one dynamic repo module (for given tags) by new ones.
+	 * Returns ids of methods which were removed or updated.
+	 */
+	public Set<MethodId> updateDynamicRepoModule(String moduleName, Set<RepoTag> tags,
+	        Map<MethodId, MethodBriefInfo> newMethods, Exception loadingError) {
+	    Set<MethodId> ret = new TreeSet<MethodId>();
+	    for (MethodId methodId : dynamicRepoMethods)
+	        if (moduleName.equals(methodId.getRepoModuleName()) && tags.contains(methodId.getTag()))
+	            ret.add(methodId);
+	    for (MethodId methodId : ret) {
+	        dynamicRepoMethods.remove(methodId);
+	        methods.remove(methodId);
+	    }
+	    dynamicRepoMethods.addAll(newMethods.keySet());
+	    methods.putAll(newMethods);
+	    ret.addAll(newMethods.keySet());
+	    if (tags.contains(RepoTag.dev)) {
+	        if (loadingError == null) {
+	            dynamicRepoModuleNameToLoadingError.remove(moduleName);
+	        } else {
+	            dynamicRepoModuleNameToLoadingError.put(moduleName, loadingError);
+	        }
+	    }
+	    methodViews = null;
+	    buildMethodViews();
+	    return ret;
+	}
+	
+	/**
+	 * Builds per-tag views of methods if they were dropped by changes of methods.
+	 * It's called before index is published so that list requests never build them.
+	 */
+	public void buildMethodViews() {
+	    if (methodViews == null)
+	        methodViews = new MethodViews(methods);
+	}
+
 	public boolean isInvalid() {
         return invalid;
     }
@@ -92,6 +154,7 @@ public class NarrativeCategoriesIndex {
 	
 	public void addOrUpdateMethod(MethodId methodId, MethodBriefInfo briefInfo) {
 		methods.put(methodId, briefInfo);
+		methodViews = null;
 	}
 
 	public void addOrUpdateApp(String appId, AppBriefInfo briefInfo) {
@@ -102,19 +165,71 @@ public class NarrativeCategoriesIndex {
 		types.put(typeName, typeInfo);
 	}
 
+	public void removeCategory(String catId) {
+	    categories.remove(catId);
+	}
+	
+	public void removeMethod(MethodId methodId) {
+	    methods.remove(methodId);
+	    methodViews = null;
+	}
+	
+	public void removeApp(String appId) {
+	    apps.remove(appId);
+	}
+	
+	public void removeType(String typeName) {
+	    types.remove(typeName);
+	}
+
 	public Map<String,Category> getCategories() {
 		return categories;
 	}
 	
+	/**
+	 * Returns unmodifiable map of all static methods and dynamic methods of given tag
+	 * (default tag is used when tagName is null). Views are shared between calls.
+	 */
 	public Map<String,MethodBriefInfo> getMethods(String tagName) {
-	    RepoTag tag = tagName == null ? defaultTagForGetters : RepoTag.valueOf(tagName);
-	    Map<String, MethodBriefInfo> ret = new LinkedHashMap<String, MethodBriefInfo>();
-	    for (Map.Entry<MethodId, MethodBriefInfo> entry : methods.entrySet())
-	        if ((!entry.getKey().isDynamic()) || entry.getKey().getTag().equals(tag))
-	            ret.put(entry.getKey().getExternalId(), entry.getValue());
-		return ret;
+		return getMethodView(tagName).methods;
 	}
 
+	/**
+	 * Returns unmodifiable list of brief infos, the same as values of getMethods(tagName).
+	 */
+	public List<MethodBriefInfo> getMethodList(String tagName) {
+	    return getMethodView(tagName).methodList;
+	}
+	
+	/**
+	 * Returns unmodifiable map from method ID to method name sorted by method ID.
+	 */
+	public Map<String, String> getMethodIdsAndNames(String tagName) {
+	    return getMethodView(tagName).idsAndNames;
+	}
+	
+	/**
+	 * Returns unmodifiable list of method IDs optionally including methods with loading errors.
+	 */
+	public List<String> getMethodIds(String tagName, boolean withErrors) {
+	    MethodView view = getMethodView(tagName);
+	    return withErrors ? view.allIds : view.validIds;
+	}
+	
+	protected MethodView getMethodView(String tagName) {
+	    RepoTag tag = tagName == null ? defaultTagForGetters : RepoTag.valueOf(tagName);
+	    MethodViews views = methodViews;
+	    if (views == null) {
+	        // index which wasn't published yet
+	        views = new MethodViews(methods);
+	        methodViews = views;
+	    }
+	    MethodView ret = views.byTag.get(tag);
+	    // dynamic methods are indexed only for dev/beta/release, so for
+	    // commit hash tags there are only static ones
+	    return ret == null ? views.staticOnly : ret;
+	}
+	
 	public Map<MethodId,MethodBriefInfo> getAllMethods() {
 	    return methods;
 	}
@@ -134,4 +249,49 @@ public class NarrativeCategoriesIndex {
 	public Map<String, Exception> getDynamicRepoModuleNameToLoadingError() {
         return dynamicRepoModuleNameToLoadingError;
     }
+	
+	/**
+	 * Precomputed collections of methods visible for one tag.
+	 */
+	protected static class MethodView {
+	    final Map<String, MethodBriefInfo> methods;
+	    final List<MethodBriefInfo> methodList;
+	    final Map<String, String> idsAndNames;
+	    final List<String> allIds;
+	    final List<String> validIds;
+	    
+	    MethodView(Map<MethodId, MethodBriefInfo> allMethods, RepoTag tag) {
+	        Map<String, MethodBriefInfo> methods = new LinkedHashMap<String, MethodBriefInfo>();
+	        Map<String, String> idsAndNames = new TreeMap<String, String>();
+	        List<String> validIds = new ArrayList<String>();
+	        for (Map.Entry<MethodId, MethodBriefInfo> entry : allMethods.entrySet()) {
+	            MethodId mId = entry.getKey();
+	            if (mId.isDynamic() && !mId.getTag().equals(tag))
+	                continue;
+	            MethodBriefInfo mbi = entry.getValue();
+	            methods.put(mId.getExternalId(), mbi);
+	            idsAndNames.put(mId.getExternalId(), mbi.getName());
+	            if (mbi.getLoadingError() == null)
+	                validIds.add(mId.getExternalId());
+	        }
+	        this.methods = Collections.unmodifiableMap(methods);
+	        this.methodList = Collections.unmodifiableList(
+	                new ArrayList<MethodBriefInfo>(methods.values()));
+	        this.idsAndNames = Collections.unmodifiableMap(idsAndNames);
+	        this.allIds = Collections.unmodifiableList(new ArrayList<String>(methods.keySet()));
+	        this.validIds = Collections.unmodifiableList(validIds);
+	    }
+	}
+	
+	protected static class MethodViews {
+	    final MethodView staticOnly;
+	    final Map<RepoTag, MethodView> byTag;
+	    
+	    MethodViews(Map<MethodId, MethodBriefInfo> methods) {
+	        staticOnly = new MethodView(methods, null);
+	        byTag = new HashMap<RepoTag, MethodView>();
+	        for (RepoTag tag : RepoTag.values())
+	            byTag.put(tag, new MethodView(methods, tag));
+	    }
+	}
 }
@@ -32,8 +32,22 @@ public class NarrativeMethodData {
 			FileLookup lookup, String namespace, String serviceVersion,
 			ServiceUrlTemplateEvaluater srvUrlTemplEval, RepoTag tag,
 			String version) throws NarrativeMethodStoreException {
+	    this(methodId, spec, display, lookup, namespace, serviceVersion, srvUrlTemplEval, tag, 
+	            version, false);
+	}
+	
+	/**
+	 * In brief-only mode spec and display are still checked the same way (so loading errors
+	 * are the same) but full info and method spec are not created, and files needed only
+	 * for them (descriptions, screenshots) are not loaded.
+	 */
+	public NarrativeMethodData(String methodId, JsonNode spec, Map<String, Object> display,
+	        FileLookup lookup, String namespace, String serviceVersion,
+	        ServiceUrlTemplateEvaluater srvUrlTemplEval, RepoTag tag,
+	        String version, boolean briefOnly) throws NarrativeMethodStoreException {
 		try {
-			update(methodId, spec, display, lookup, namespace, serviceVersion, srvUrlTemplEval, tag, version);
+			update(methodId, spec, display, lookup, namespace, serviceVersion, srvUrlTemplEval, tag, 
+			        version, briefOnly);
 		} catch (Throwable ex) {
 			if (briefInfo.getName() == null)
 				briefInfo.withName(briefInfo.getId());
@@ -63,7 +77,17 @@ public class NarrativeMethodData {
 			FileLookup lookup, String namespace, String serviceVersion,
 			ServiceUrlTemplateEvaluater srvUrlTemplEval, RepoTag tag,
 			String version) throws NarrativeMethodStoreException {
+	    update(methodId, spec, display, lookup, namespace, serviceVersion, srvUrlTemplEval, tag,
+	            version, false);
+	}
+	
+	public void update(String methodId, JsonNode spec, Map<String, Object> display,
+	        FileLookup lookup, String namespace, String serviceVersion,
+	        ServiceUrlTemplateEvaluater srvUrlTemplEval, RepoTag tag,
+	        String version, boolean briefOnly) throws NarrativeMethodStoreException {
 		this.methodId = methodId;
+		this.fullInfo = null;
+		this.methodSpec = null;
 
 		briefInfo = new MethodBriefInfo()
 							.withId(this.methodId)
@@ -89,15 +113,22 @@ public class NarrativeMethodData {
 		} catch (IllegalStateException e) { }
 		briefInfo.withSubtitle(methodSubtitle);
 		
-		String methodDescription = getDisplayText(display, "description", lookup);
+		String methodDescription = null;
 		String methodTechnicalDescr = "";
-		try { methodTechnicalDescr = getDisplayText(display, "technical-description", lookup); }
-		catch (IllegalStateException e) { /*tech description is optional; do nothing*/ }
-		
-		// if replacement text is missing, do nothing, we just won't have any replacement text
 		String replacementText = null;
-		try { replacementText = getDisplayText(display,"replacement-text",lookup); }
-		catch (IllegalStateException e) { }
+		if (briefOnly) {
+		    // only presence of description is checked
+		    if (!lookup.fileExists("description.html"))
+		        getDisplayText("/", display, "description");
+		} else {
+		    methodDescription = getDisplayText(display, "description", lookup);
+		    try { methodTechnicalDescr = getDisplayText(display, "technical-description", lookup); }
+		    catch (IllegalStateException e) { /*tech description is optional; do nothing*/ }
+
+		    // if replacement text is missing, do nothing, we just won't have any replacement text
+		    try { replacementText = getDisplayText(display,"replacement-text",lookup); }
+		    catch (IllegalStateException e) { }
+		}
 		
 		if (version == null) {
 		    // "ver" property from spec.json is still used in case of non-dynamic method 
@@ -114,7 +145,7 @@ public class NarrativeMethodData {
 		List<ScreenShot> screenshots = new ArrayList<ScreenShot>();
 		@SuppressWarnings("unchecked")
 		List<String> imageNames = (List<String>)getDisplayItem("/", display, "screenshots");
-		if (imageNames != null) {
+		if (imageNames != null && !briefOnly) {
 			for (String imageName : imageNames)
 			    if (imageName != null && lookup.fileExists("img/" + imageName)) {
 			        String url = "img?method_id=" + this.methodId + "&image_name=" + imageName;
@@ -205,7 +236,7 @@ public class NarrativeMethodData {
 									.withRelatedMethods(relatedMethods)
 									.withNextMethods(nextMethods);
 		
-		fullInfo = new MethodFullInfo()
+		MethodFullInfo fullInfo = new MethodFullInfo()
 							.withId(this.methodId)
 							.withModuleName(namespace)
 							.withGitCommitHash(serviceVersion)
@@ -776,6 +807,13 @@ public class NarrativeMethodData {
 			}
 		}
 		
+		// Parameters, groups and mappings above are parsed in brief-only mode too on purpose:
+		// index marks methods failing on them as errors, so brief and full parse should fail
+		// the same way. It's a small part of brief parse, most of time goes to reading and
+		// parsing spec.json and display.yaml.
+		if (briefOnly)
+		    return;
+		this.fullInfo = fullInfo;
 		methodSpec = new MethodSpec()
 							.withInfo(briefInfo)
 							.withReplacementText(replacementText)
@@ -879,12 +917,12 @@ public class NarrativeMethodData {
 	        String typeName) {
 	    if (value == null)
 	        return null;
-	    String json = UObject.transformObjectToString(value);
 	    try {
-	        return UObject.transformStringToObject(json, type);
+	        return ValueConverter.convert(value, type);
 	    } catch (Exception ex) {
 	        throw new IllegalStateException("Cannot cast data within path [" + path + "] in " +
-	        		"display.yaml (" + json + ") to type \"" + typeName + "\"", ex);
+	        		"display.yaml (" + UObject.transformObjectToString(value) + ") to type \"" + 
+	        		typeName + "\"", ex);
 	    }
 	}
 }
@@ -28,5 +28,10 @@ public interface RepoProvider {
     public FilePointer getScreenshot(String methodId, String screenshotId) throws NarrativeMethodStoreException;
     /////////// [utils] ///////////
     public FilePointer getRepoZip() throws NarrativeMethodStoreException;
+    /**
+     * Gives a hint that spec, display and screenshot files of listed methods are 
+     * going to be requested so that they could be loaded in bulk.
+     */
+    public void preloadUINarrativeMethodFiles(List<String> methodIds) throws NarrativeMethodStoreException;
     public void dispose() throws NarrativeMethodStoreException;
 }
@@ -1,18 +1,33 @@
 package us.kbase.narrativemethodstore.db;
 
+import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.Velocity;
+import org.apache.velocity.runtime.RuntimeInstance;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
 
 public class ServiceUrlTemplateEvaluater {
+    private static final int MAX_CACHED_TEMPLATES = 1000;
+    private static final int MAX_CACHED_RESULTS = 10000;
+    
     private String endpointHost;
     private String endpointBase;
     private String endpoint = null;
+    private final RuntimeInstance velocity = new RuntimeInstance();
+    private final Cache<String, Template> templates = 
+            CacheBuilder.newBuilder().maximumSize(MAX_CACHED_TEMPLATES).build();
+    private final Cache<List<String>, String> results = 
+            CacheBuilder.newBuilder().maximumSize(MAX_CACHED_RESULTS).build();
     
     public ServiceUrlTemplateEvaluater(String endpointHost, String endpointBase) {
         this.endpointHost = endpointHost;
@@ -24,35 +39,57 @@ public class ServiceUrlTemplateEvaluater {
         }
     }
     
+    /**
+     * Evaluates Velocity template. Parsed templates and results are cached (the result
+     * depends only on template, module name and version for given endpoint).
+     */
     public String evaluate(String urlTemplate, String moduleName, String serviceVersion) 
             throws NarrativeMethodStoreException {
+        List<String> key = Arrays.asList(urlTemplate, moduleName, serviceVersion);
+        String ret = results.getIfPresent(key);
+        if (ret != null)
+            return ret;
         try {
-            StringWriter sw = new StringWriter();
-            Map<String, String> context = new HashMap<String, String>();
-            if (endpointBase != null)
-                context.put("endpoint-base", endpointBase);
-            if (endpointHost != null)
-                context.put("endpoint-host", endpointHost);
-            if (endpoint != null)
-                context.put("endpoint", endpoint);
-            if (moduleName != null) {
-                context.put("module-name", moduleName);
-                context.put("module", moduleName.toLowerCase());
-            }
-            if (serviceVersion != null)
-                context.put("version", serviceVersion);
-            if (endpoint != null && moduleName != null) {
-                String unversionedUrl = endpoint + "/" + moduleName.toLowerCase();
-                String url = unversionedUrl + (serviceVersion == null ? "" : (":" + serviceVersion));
-                context.put("unversioned-url", unversionedUrl);
-                context.put("url", url);
+            Template template = templates.getIfPresent(urlTemplate);
+            if (template == null) {
+                template = new Template();
+                template.setRuntimeServices(velocity);
+                template.setData(velocity.parse(new StringReader(urlTemplate), 
+                        "ServiceUrlTemplate"));
+                template.initDocument();
+                templates.put(urlTemplate, template);
             }
-            VelocityContext cntx = new VelocityContext(context);
-            Velocity.evaluate(cntx, sw, "ServiceUrlTemplate", urlTemplate);
-            return sw.toString();
+            StringWriter sw = new StringWriter();
+            template.merge(new VelocityContext(createContext(moduleName, serviceVersion)), sw);
+            ret = sw.toString();
         } catch (Exception ex) {
             throw new NarrativeMethodStoreException("Problems with service url template " +
             		"evaluation: " + urlTemplate, ex);
         }
+        results.put(key, ret);
+        return ret;
+    }
+    
+    private Map<String, Object> createContext(String moduleName, String serviceVersion) {
+        Map<String, Object> context = new HashMap<String, Object>();
+        if (endpointBase != null)
+            context.put("endpoint-base", endpointBase);
+        if (endpointHost != null)
+            context.put("endpoint-host", endpointHost);
+        if (endpoint != null)
+            context.put("endpoint", endpoint);
+        if (moduleName != null) {
+            context.put("module-name", moduleName);
+            context.put("module", moduleName.toLowerCase());
+        }
+        if (serviceVersion != null)
+            context.put("version", serviceVersion);
+        if (endpoint != null && moduleName != null) {
+            String unversionedUrl = endpoint + "/" + moduleName.toLowerCase();
+            String url = unversionedUrl + (serviceVersion == null ? "" : (":" + serviceVersion));
+            context.put("unversioned-url", unversionedUrl);
+            context.put("url", url);
+        }
+        return context;
     }
 }
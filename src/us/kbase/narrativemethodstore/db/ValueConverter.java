@@ -0,0 +1,168 @@
+package us.kbase.narrativemethodstore.db;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.math.BigInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import us.kbase.common.service.UObject;
+
+/**
+ * Converts parsed YAML/JSON/Mongo objects (maps, lists, scalars) to typed objects
+ * through token buffers without serializing them into JSON strings. Numbers are
+ * read the same way as after JSON text round trip used before. Java types resolved
+ * for classes and type references are cached.
+ */
+public class ValueConverter {
+    private static final ConcurrentMap<Type, JavaType> javaTypes =
+            new ConcurrentHashMap<Type, JavaType>();
+
+    /**
+     * Returns value itself if it's already instance of given class or converted copy
+     * otherwise. Conversion errors are reported as IllegalArgumentException.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T convert(Object value, Class<T> type) {
+        if (value == null || type.isInstance(value))
+            return (T)value;
+        return convert(value, getJavaType(type));
+    }
+
+    public static <T> T convert(Object value, TypeReference<T> type) {
+        if (value == null)
+            return null;
+        return convert(value, getJavaType(type.getType()));
+    }
+
+    public static <T> T convert(Object value, JavaType type) {
+        ObjectMapper mapper = getMapper();
+        TokenBuffer buf = new NumberQuotingBuffer(mapper);
+        try {
+            mapper.writeValue(buf, value);
+            return mapper.readValue(new NumberNormalizingParser(buf.asParser()), type);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(ex.getMessage(), ex);
+        }
+    }
+
+    public static JavaType getJavaType(Type type) {
+        JavaType ret = javaTypes.get(type);
+        if (ret == null) {
+            ret = getMapper().getTypeFactory().constructType(type);
+            javaTypes.putIfAbsent(type, ret);
+        }
+        return ret;
+    }
+
+    private static ObjectMapper getMapper() {
+        return UObject.getMapper();
+    }
+
+    /**
+     * JSON generator writes NaN and infinite numbers as strings by default.
+     */
+    private static class NumberQuotingBuffer extends TokenBuffer {
+        public NumberQuotingBuffer(ObjectCodec codec) {
+            super(codec);
+        }
+
+        @Override
+        public void writeNumber(double d) throws IOException, JsonGenerationException {
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                writeString(String.valueOf(d));
+            } else {
+                super.writeNumber(d);
+            }
+        }
+
+        @Override
+        public void writeNumber(float f) throws IOException, JsonGenerationException {
+            if (Float.isNaN(f) || Float.isInfinite(f)) {
+                writeString(String.valueOf(f));
+            } else {
+                super.writeNumber(f);
+            }
+        }
+    }
+
+    /**
+     * Reports numbers from buffer as JSON parser reported them in text: integers as
+     * the smallest of Integer/Long/BigInteger, fractions as Double parsed from text.
+     * Overflow of int/long is an error rather than silent cast.
+     */
+    private static class NumberNormalizingParser extends JsonParserDelegate {
+        public NumberNormalizingParser(JsonParser p) {
+            super(p);
+        }
+
+        @Override
+        public Number getNumberValue() throws IOException, JsonParseException {
+            Number n = super.getNumberValue();
+            if (getCurrentToken() == JsonToken.VALUE_NUMBER_FLOAT) {
+                return n instanceof Double ? n : Double.valueOf(getText());
+            }
+            if (n instanceof Integer)
+                return n;
+            BigInteger big = n instanceof BigInteger ? (BigInteger)n : BigInteger.valueOf(n.longValue());
+            if (big.bitLength() < 32)
+                return big.intValue();
+            if (big.bitLength() < 64)
+                return big.longValue();
+            return big;
+        }
+
+        @Override
+        public NumberType getNumberType() throws IOException, JsonParseException {
+            Number n = getNumberValue();
+            if (n instanceof Integer)
+                return NumberType.INT;
+            if (n instanceof Long)
+                return NumberType.LONG;
+            if (n instanceof BigInteger)
+                return NumberType.BIG_INTEGER;
+            return NumberType.DOUBLE;
+        }
+
+        @Override
+        public int getIntValue() throws IOException, JsonParseException {
+            Number n = getNumberValue();
+            if (n instanceof Long || n instanceof BigInteger ||
+                    n.doubleValue() < Integer.MIN_VALUE || n.doubleValue() > Integer.MAX_VALUE)
+                throw new JsonParseException("Numeric value (" + getText() +
+                        ") out of range of int", getCurrentLocation());
+            return n.intValue();
+        }
+
+        @Override
+        public long getLongValue() throws IOException, JsonParseException {
+            Number n = getNumberValue();
+            if (n instanceof BigInteger ||
+                    n.doubleValue() < Long.MIN_VALUE || n.doubleValue() > Long.MAX_VALUE)
+                throw new JsonParseException("Numeric value (" + getText() +
+                        ") out of range of long", getCurrentLocation());
+            return n.longValue();
+        }
+
+        @Override
+        public double getDoubleValue() throws IOException, JsonParseException {
+            return getNumberValue().doubleValue();
+        }
+
+        @Override
+        public float getFloatValue() throws IOException, JsonParseException {
+            return getNumberValue().floatValue();
+        }
+    }
+}
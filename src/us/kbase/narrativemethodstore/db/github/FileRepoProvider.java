@@ -1,12 +1,10 @@
 package us.kbase.narrativemethodstore.db.github;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.URL;
 import java.util.ArrayList;
@@ -15,18 +13,31 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.IOUtils;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 
+import us.kbase.narrativemethodstore.db.DynamicRepoDB;
 import us.kbase.narrativemethodstore.db.FileId;
 import us.kbase.narrativemethodstore.db.FilePointer;
 import us.kbase.narrativemethodstore.db.RepoProvider;
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
 import us.kbase.narrativemethodstore.util.FileUtils;
+import us.kbase.narrativemethodstore.util.TextUtils;
 
 public class FileRepoProvider implements RepoProvider {
+    /**
+     * Paths (relative to repo root) which are read from module repo.
+     */
+    public static final List<String> REPO_PATHS = Collections.unmodifiableList(
+            Arrays.asList("ui/", "kbase.yml", "kbase.yaml", "README.md"));
+
     protected final File rootDir;
     protected URL url;
     protected final String moduleName;
@@ -35,6 +46,8 @@ public class FileRepoProvider implements RepoProvider {
     protected String moduleVersion = null;
     protected List<String> owners = null;
     private File repoZipFile = null;
+    // ids of files which were already stored into dynamic repo database
+    private final Map<File, FileId> storedFileIds = new ConcurrentHashMap<File, FileId>();
 
     public FileRepoProvider(File rootDir) throws NarrativeMethodStoreException {
         this(rootDir, null);
@@ -218,6 +231,12 @@ public class FileRepoProvider implements RepoProvider {
     }
     /////////// [utils] ///////////
     
+    @Override
+    public void preloadUINarrativeMethodFiles(List<String> methodIds)
+            throws NarrativeMethodStoreException {
+        // Files are read from local disk, nothing to preload
+    }
+    
     @Override
     public void dispose() throws NarrativeMethodStoreException {
         if (repoZipFile != null && repoZipFile.exists())
@@ -249,36 +268,89 @@ public class FileRepoProvider implements RepoProvider {
             throw new NarrativeMethodStoreException("File doesn't exist: " + f);
         }
         try {
-            return get(new FileInputStream(f));
+            return TextUtils.text(f);
         } catch (IOException ex) {
             throw new NarrativeMethodStoreException("Error reading file [" + f + "] (" + ex.getMessage() + ")", ex);
         }
     }
     
     protected String get(InputStream is) throws IOException {
-        StringBuilder response = new StringBuilder();
-        BufferedReader in = new BufferedReader(new InputStreamReader(is));
-        String line;
-        while ((line = in.readLine()) != null) 
-            response.append(line+"\n");
-        in.close();
-        return response.toString();
+        return TextUtils.text(is);
     }
     
     private FilePointer fp(File f) {
-        return new DiskFilePointer(f);
+        return new DiskFilePointer(f, storedFileIds.get(f));
+    }
+    
+    /**
+     * Stores all UI files and README into dynamic repo database in parallel so that
+     * pointers returned later refer to stored files. Listener is notified about each
+     * stored file.
+     */
+    public void storeFiles(final DynamicRepoDB db, ExecutorService pool, 
+            final FileStorageListener listener) throws NarrativeMethodStoreException {
+        List<File> files = new ArrayList<File>();
+        files.add(getReadmeFile().getFile());
+        for (String methodId : listUINarrativeMethodIDs()) {
+            files.add(getUINarrativeMethodSpec(methodId).getFile());
+            files.add(getUINarrativeMethodDisplay(methodId).getFile());
+            for (String screenshotId : listScreenshotIDs(methodId))
+                files.add(getScreenshot(methodId, screenshotId).getFile());
+        }
+        for (String widgetId : listUIWidgetIds())
+            files.add(getUIWidgetJS(widgetId).getFile());
+        List<File> toStore = new ArrayList<File>();
+        for (File f : files)
+            if (f.isFile() && !storedFileIds.containsKey(f))
+                toStore.add(f);
+        if (listener != null)
+            listener.filesToStore(toStore.size());
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final File f : toStore) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    storedFileIds.put(f, db.saveFile(moduleName, f));
+                    if (listener != null)
+                        listener.fileStored();
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks))
+                future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new NarrativeMethodStoreException("Storing files was interrupted", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof NarrativeMethodStoreException)
+                throw (NarrativeMethodStoreException)ex.getCause();
+            throw new NarrativeMethodStoreException(ex.getCause());
+        }
+    }
+    
+    public static interface FileStorageListener {
+        public void filesToStore(int count);
+        public void fileStored();
     }
     
     public static class DiskFilePointer implements FilePointer {
         private final File file;
+        private final FileId fileId;
         
         public DiskFilePointer(File f) {
+            this(f, null);
+        }
+        
+        public DiskFilePointer(File f, FileId fileId) {
             this.file = f;
+            this.fileId = fileId;
         }
         
         @Override
         public FileId getFileId() {
-            return null;
+            return fileId;
         }
         
         @Override
@@ -0,0 +1,48 @@
+package us.kbase.narrativemethodstore.db.github;
+
+import java.io.File;
+import java.util.List;
+
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreInitializationException;
+
+/**
+ * Git operations needed for keeping local copy of specs-repo up to date.
+ */
+public interface GitBackend {
+
+    public String gitClone(String branch, File localPath) throws NarrativeMethodStoreInitializationException;
+
+    /**
+     * Checks if local path contains clone of repository with given branch checked out.
+     */
+    public boolean isCloneOf(File localPath, String branch);
+
+    public String gitPull(File localPath) throws NarrativeMethodStoreInitializationException;
+
+    public String gitFetch(File localPath, String branch) throws NarrativeMethodStoreInitializationException;
+
+    /**
+     * Fast-forwards local branch to fetched commit, fails if history of remote
+     * branch was rewritten (force push).
+     */
+    public String gitMergeFetchHead(File localPath) throws NarrativeMethodStoreInitializationException;
+
+    /**
+     * Checks if first commit is ancestor of second one. It's false when history of
+     * remote branch was rewritten.
+     */
+    public boolean isAncestor(File localPath, String ancestorCommitHash, String commitHash)
+            throws NarrativeMethodStoreInitializationException;
+
+    public String getHeadCommitHash(File localPath) throws NarrativeMethodStoreInitializationException;
+
+    /**
+     * Returns hash of commit fetched last time or null if nothing was fetched.
+     */
+    public String getFetchHeadCommitHash(File localPath) throws NarrativeMethodStoreInitializationException;
+
+    public String getCommitInfo(File localPath) throws NarrativeMethodStoreInitializationException;
+
+    public List<String> getChangedPaths(File localPath, String fromCommitHash, 
+            String toCommitHash) throws NarrativeMethodStoreInitializationException;
+}
@@ -1,8 +1,6 @@
 package us.kbase.narrativemethodstore.db.github;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
@@ -10,7 +8,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
-import org.yaml.snakeyaml.Yaml;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -23,6 +20,7 @@ import us.kbase.narrativemethodstore.db.FileLookup;
 import us.kbase.narrativemethodstore.db.MethodSpecDB;
 import us.kbase.narrativemethodstore.db.NarrativeMethodData;
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+import us.kbase.narrativemethodstore.util.TextUtils;
 
 
 
@@ -33,7 +31,6 @@ public class GitHubDB implements MethodSpecDB {
 	public static final String GITHUB_RAW_CONTENT_URL_DEFAULT = "https://raw.githubusercontent.com";
 	
 	private final ObjectMapper mapper = new ObjectMapper();
-	private final Yaml yaml = new Yaml();
 	
 	// github config variables
 	private String GITHUB_API_URL;
@@ -201,11 +198,7 @@ public class GitHubDB implements MethodSpecDB {
 	
 	protected Map<String,Object> getResourceAsYamlMap(String path) throws IOException {
 		URL url = new URL(GITHUB_RAW_CONTENT_URL + "/" + owner + "/" + repo + "/"+branch+"/"+path);
-		String document = get(url);
-		@SuppressWarnings("unchecked")
-		Map<String,Object> data = (Map<String, Object>) yaml.load(document);
-		//System.out.println("fetched yaml ("+url+"):\n"+yaml.dump(data));
-		return data;
+		return YamlUtils.getDocumentAsYamlMap(get(url));
 	}
 	
 	
@@ -214,14 +207,8 @@ public class GitHubDB implements MethodSpecDB {
 	}
 	
 	protected String get(URL url) throws IOException {
-		StringBuilder response = new StringBuilder();
 		URLConnection conn = url.openConnection();
-		BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-		String line;
-		while ((line = in.readLine()) != null) 
-			response.append(line+"\n");
-		in.close();
-		return response.toString();
+		return TextUtils.text(conn.getInputStream());
 	}
 	 
 	
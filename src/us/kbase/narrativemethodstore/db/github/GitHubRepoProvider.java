@@ -25,9 +25,7 @@ public class GitHubRepoProvider extends FileRepoProvider {
 
     private static File prepareGitClone(URL url, File rootDir, String commitHash) throws NarrativeMethodStoreException {
         try {
-            GitUtils.gitClone(url, rootDir);
-            if (commitHash != null)
-                GitUtils.gitCheckout(rootDir, url, commitHash);
+            GitUtils.gitSparseCheckout(url, commitHash, rootDir, REPO_PATHS);
             return rootDir;
         } catch (NarrativeMethodStoreException ex) {
             dispose(rootDir);
@@ -51,6 +49,7 @@ public class GitHubRepoProvider extends FileRepoProvider {
     @Override
     public FilePointer getRepoZip() throws NarrativeMethodStoreException {
         // We don't create git repo zip because we have git-url + commit-hash to track files.
+        // Besides only REPO_PATHS are checked out, so zip of rootDir would miss sources.
         return null;
     }
     
@@ -2,9 +2,15 @@ package us.kbase.narrativemethodstore.db.github;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
 
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreInitializationException;
 
@@ -12,11 +18,12 @@ public class GitUtils {
 
     /**
      * Clones the configured git repo to the target local file location, returns standard output of the command
-     * if successful, otherwise throws an exception.
+     * if successful, otherwise throws an exception. Only last commit of given branch is fetched, following 
+     * fetches bring new commits of this branch.
      */
     public static String gitClone(URL gitRepoUrl, String gitBranch, File gitLocalPath) throws NarrativeMethodStoreInitializationException {
         try {
-            return gitCommand("git clone --branch "+gitBranch+" "+gitRepoUrl+" "+gitLocalPath.getAbsolutePath(), 
+            return gitCommand("git clone --depth 1 --single-branch --branch "+gitBranch+" "+gitRepoUrl+" "+gitLocalPath.getAbsolutePath(), 
                     "clone", gitLocalPath.getCanonicalFile().getParentFile(), gitRepoUrl);
         } catch (IOException e) {
             throw new NarrativeMethodStoreInitializationException("Cannot clone "+gitRepoUrl+": " + e.getMessage(), e);
@@ -24,12 +31,12 @@ public class GitUtils {
     }
 
     /**
-     * Clones the configured git repo to the target local file location, returns standard output of the command
-     * if successful, otherwise throws an exception.
+     * Clones last commit of default branch of the configured git repo to the target local file location, 
+     * returns standard output of the command if successful, otherwise throws an exception.
      */
     public static String gitClone(URL gitRepoUrl, File gitLocalPath) throws NarrativeMethodStoreInitializationException {
         try {
-            return gitCommand("git clone "+gitRepoUrl+" "+gitLocalPath.getAbsolutePath(), 
+            return gitCommand("git clone --depth 1 "+gitRepoUrl+" "+gitLocalPath.getAbsolutePath(), 
                     "clone", gitLocalPath.getCanonicalFile().getParentFile(), gitRepoUrl);
         } catch (IOException e) {
             throw new NarrativeMethodStoreInitializationException("Cannot clone "+gitRepoUrl+": " + e.getMessage(), e);
@@ -47,52 +54,226 @@ public class GitUtils {
         return gitCommand("git checkout " + commitHash, "checkout", gitLocalPath, gitRepoUrl);
     }
 
+    /**
+     * Checks out only given paths (relative to repo root) of one commit (or of last commit of 
+     * default branch if commitHash is null) into new local repository. Only this commit is fetched 
+     * when remote side allows fetching by commit hash, otherwise all branches are fetched.
+     */
+    public static void gitSparseCheckout(URL gitRepoUrl, String commitHash, File gitLocalPath, 
+            List<String> paths) throws NarrativeMethodStoreInitializationException {
+        try {
+            gitCommand("git init " + gitLocalPath.getAbsolutePath(), "init", 
+                    gitLocalPath.getCanonicalFile().getParentFile(), gitRepoUrl);
+            gitCommand("git remote add origin " + gitRepoUrl, "remote add", gitLocalPath, gitRepoUrl);
+            gitCommand("git config core.sparseCheckout true", "config", gitLocalPath, gitRepoUrl);
+            File infoDir = new File(getGitDir(gitLocalPath), "info");
+            infoDir.mkdirs();
+            StringBuilder patterns = new StringBuilder();
+            for (String path : paths)
+                patterns.append("/").append(path).append("\n");
+            FileUtils.writeStringToFile(new File(infoDir, "sparse-checkout"), 
+                    patterns.toString(), "utf-8");
+        } catch (IOException e) {
+            throw new NarrativeMethodStoreInitializationException("Cannot prepare checkout of " + 
+                    gitRepoUrl + ": " + e.getMessage(), e);
+        }
+        String target = commitHash == null ? "FETCH_HEAD" : commitHash;
+        try {
+            if (commitHash != null && !isCommitHash(commitHash))
+                throw new NarrativeMethodStoreInitializationException("Abbreviated commit hash: " + 
+                        commitHash);
+            gitCommand("git fetch --depth 1 origin " + (commitHash == null ? "HEAD" : commitHash), 
+                    "fetch", gitLocalPath, gitRepoUrl);
+            target = "FETCH_HEAD";
+        } catch (NarrativeMethodStoreInitializationException ex) {
+            if (commitHash == null)
+                throw ex;
+            // fetching by commit hash is not supported by remote side
+            gitCommand("git fetch origin", "fetch", gitLocalPath, gitRepoUrl);
+        }
+        gitCommand("git checkout " + target, "checkout", gitLocalPath, gitRepoUrl);
+    }
+
     public static String getCommitInfo(File gitLocalPath, URL gitRepoUrl) throws NarrativeMethodStoreInitializationException {
         return gitCommand("git log -n 1", "log -n 1", gitLocalPath, gitRepoUrl);
     }
 
+    /**
+     * Returns hash of HEAD commit. It's read directly from refs of repository, 
+     * git process is started only if refs can't be resolved that way.
+     */
     public static String getCommitHash(File gitLocalPath, URL gitRepoUrl) throws NarrativeMethodStoreInitializationException {
+        try {
+            String ret = readRef(getGitDir(gitLocalPath), "HEAD");
+            if (ret != null)
+                return ret;
+        } catch (IOException ignore) {}
         return gitCommand("git rev-parse HEAD", "rev-parse HEAD", gitLocalPath, gitRepoUrl).trim();
     }
     
+    /**
+     * Returns hash of commit which would be merged by "git merge FETCH_HEAD" or null
+     * if nothing was fetched yet.
+     */
+    public static String getFetchHeadCommitHash(File gitLocalPath) throws IOException {
+        File fetchHead = new File(getGitDir(gitLocalPath), "FETCH_HEAD");
+        if (!fetchHead.exists())
+            return null;
+        for (String line : readLines(fetchHead)) {
+            String[] parts = line.split("\t");
+            if (parts.length > 1 && parts[1].equals("not-for-merge"))
+                continue;
+            if (isCommitHash(parts[0].trim()))
+                return parts[0].trim();
+        }
+        return null;
+    }
+    
+    /**
+     * Returns directory with git database for working copy or bare repository.
+     */
+    public static File getGitDir(File gitLocalPath) throws IOException {
+        File dotGit = new File(gitLocalPath, ".git");
+        if (dotGit.isDirectory())
+            return dotGit;
+        if (dotGit.isFile()) {
+            for (String line : readLines(dotGit))
+                if (line.startsWith("gitdir:")) {
+                    File ret = new File(line.substring(7).trim());
+                    return ret.isAbsolute() ? ret : new File(gitLocalPath, ret.getPath());
+                }
+        }
+        return gitLocalPath;
+    }
+    
+    /**
+     * Resolves symbolic or direct reference (like HEAD or refs/heads/dev) using
+     * loose refs and packed-refs file. Returns null if reference is not found.
+     */
+    public static String readRef(File gitDir, String refName) throws IOException {
+        for (int depth = 0; depth < 10; depth++) {
+            String value = null;
+            File refFile = new File(gitDir, refName);
+            if (refFile.isFile()) {
+                List<String> lines = readLines(refFile);
+                value = lines.isEmpty() ? null : lines.get(0).trim();
+            } else {
+                value = readPackedRef(gitDir, refName);
+            }
+            if (value == null)
+                return null;
+            if (!value.startsWith("ref:"))
+                return isCommitHash(value) ? value : null;
+            refName = value.substring(4).trim();
+        }
+        return null;
+    }
+    
+    private static String readPackedRef(File gitDir, String refName) throws IOException {
+        File packedRefs = new File(gitDir, "packed-refs");
+        if (!packedRefs.isFile())
+            return null;
+        for (String line : readLines(packedRefs)) {
+            if (line.startsWith("#") || line.startsWith("^"))
+                continue;
+            int pos = line.indexOf(' ');
+            if (pos > 0 && line.substring(pos + 1).trim().equals(refName))
+                return line.substring(0, pos);
+        }
+        return null;
+    }
+    
+    private static boolean isCommitHash(String text) {
+        return text.length() == 40 && text.matches("[0-9a-f]+");
+    }
+    
+    private static List<String> readLines(File f) throws IOException {
+        BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(f), 
+                Charset.forName("utf-8")));
+        try {
+            List<String> ret = new ArrayList<String>();
+            for (String line = br.readLine(); line != null; line = br.readLine())
+                ret.add(line);
+            return ret;
+        } finally {
+            br.close();
+        }
+    }
+    
+    /**
+     * Returns paths (relative to repo root) of files changed between two commits.
+     * Renames are reported as deletion of old path and addition of new one.
+     */
+    public static List<String> gitDiffNameOnly(File gitLocalPath, URL gitRepoUrl, 
+            String fromCommitHash, String toCommitHash) throws NarrativeMethodStoreInitializationException {
+        String out = gitCommand("git diff --name-only --no-renames " + fromCommitHash + " " + toCommitHash, 
+                "diff --name-only", gitLocalPath, gitRepoUrl);
+        List<String> ret = new ArrayList<String>();
+        for (String line : out.split("\n")) {
+            line = line.trim();
+            if (!line.isEmpty())
+                ret.add(line);
+        }
+        return ret;
+    }
+    
+    /**
+     * Checks if first commit is ancestor of second one (so that second can be merged
+     * by fast-forward). Both commits should be present in local repo.
+     */
+    public static boolean gitIsAncestor(File gitLocalPath, URL gitRepoUrl, String ancestorCommitHash,
+            String commitHash) throws NarrativeMethodStoreInitializationException {
+        // exit code 1 means "not ancestor", others are errors
+        return gitCommand("git merge-base --is-ancestor " + ancestorCommitHash + " " + commitHash, 
+                "merge-base", gitLocalPath, gitRepoUrl, new StringBuilder(), 1) == 0;
+    }
+    
+    /**
+     * Runs git command, standard error is redirected into temporary file so that 
+     * output can be read by current thread without additional reader threads.
+     */
     public static String gitCommand(String fullCmd, String nameOfCmd, File curDir, URL gitRepoUrl) throws NarrativeMethodStoreInitializationException {
+        StringBuilder out = new StringBuilder();
+        gitCommand(fullCmd, nameOfCmd, curDir, gitRepoUrl, out, 0);
+        return out.toString();
+    }
+
+    /**
+     * Runs git command and returns its exit code. Exit codes greater than maxExitCode
+     * are reported as errors.
+     */
+    private static int gitCommand(String fullCmd, String nameOfCmd, File curDir, URL gitRepoUrl, 
+            StringBuilder out, int maxExitCode) throws NarrativeMethodStoreInitializationException {
+        File errFile = null;
         try {
-            Process p = Runtime.getRuntime().exec(fullCmd, null, curDir);
-            
+            errFile = File.createTempFile("git_", ".err");
+            Process p = new ProcessBuilder(fullCmd.trim().split("\\s+")).directory(curDir)
+                    .redirectError(errFile).start();
+            p.getOutputStream().close();
             BufferedReader stdOut = new BufferedReader(new InputStreamReader(p.getInputStream()));
-            BufferedReader stdError = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-            StringBuilder out = new StringBuilder();
-            StringBuilder error = new StringBuilder();
-            Thread outT = readInThread(stdOut, out);
-            Thread errT = readInThread(stdError, error);
-            
-            outT.join();
-            errT.join();
+            try {
+                String s1 = null;
+                while ((s1 = stdOut.readLine()) != null) { out.append(s1+"\n"); }
+            } finally {
+                stdOut.close();
+            }
             int exitcode = p.waitFor();
             
-            if(exitcode!=0) {
+            if(exitcode<0 || exitcode>maxExitCode) {
+                StringBuilder error = new StringBuilder();
+                for (String line : readLines(errFile))
+                    error.append(line).append("\n");
                 throw new NarrativeMethodStoreInitializationException("Cannot " + nameOfCmd + " "+gitRepoUrl+": " + error);
             }
-            return out.toString();
+            return exitcode;
+        } catch (NarrativeMethodStoreInitializationException e) {
+            throw e;
         } catch (Exception e) {
             throw new NarrativeMethodStoreInitializationException("Cannot " + nameOfCmd + " "+gitRepoUrl+": " + e.getMessage(), e);
+        } finally {
+            if (errFile != null)
+                errFile.delete();
         }
     }
 
-    private static Thread readInThread(final BufferedReader stdOut, final StringBuilder out) {
-        Thread ret = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    String s1 = null;
-                    while ((s1 = stdOut.readLine()) != null) { out.append(s1+"\n"); }
-                } catch (IOException ex) {
-                    throw new IllegalStateException(ex);
-                }
-            }
-        });
-        ret.start();
-        return ret;
-    }
-
 }
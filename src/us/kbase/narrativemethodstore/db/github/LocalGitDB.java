@@ -1,10 +1,9 @@
 package us.kbase.narrativemethodstore.db.github;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -12,21 +11,37 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
 
 import org.apache.commons.io.FileUtils;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import us.kbase.narrativemethodstore.AppBriefInfo;
 import us.kbase.narrativemethodstore.AppFullInfo;
@@ -37,6 +52,7 @@ import us.kbase.narrativemethodstore.MethodSpec;
 import us.kbase.narrativemethodstore.RepoDetails;
 import us.kbase.narrativemethodstore.TypeInfo;
 import us.kbase.narrativemethodstore.db.DynamicRepoDB;
+import us.kbase.narrativemethodstore.db.FileContentCache;
 import us.kbase.narrativemethodstore.db.FileLookup;
 import us.kbase.narrativemethodstore.db.FilePointer;
 import us.kbase.narrativemethodstore.db.NarrativeAppData;
@@ -46,6 +62,8 @@ import us.kbase.narrativemethodstore.db.NarrativeTypeData;
 import us.kbase.narrativemethodstore.db.RepoProvider;
 import us.kbase.narrativemethodstore.db.ServiceUrlTemplateEvaluater;
 import us.kbase.narrativemethodstore.db.DynamicRepoDB.RepoState;
+import us.kbase.narrativemethodstore.db.github.RepoRegistrationQueue.RegistrationJob;
+import us.kbase.narrativemethodstore.db.github.RepoRegistrationQueue.Stage;
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreInitializationException;
 import us.kbase.narrativemethodstore.util.TextUtils;
@@ -57,170 +75,272 @@ public class LocalGitDB {
 	protected final File gitLocalPath;
 	protected final int refreshTimeInMinutes;
 	protected final int cacheSize;
+	protected final int indexParallelism;
+	protected final GitBackend git;
+	/**
+	 * Existing clone and saved index are reused on start when possible.
+	 */
+	protected final boolean warmStart;
+	protected String lastDynamicReposKey = null;
+	/**
+	 * Versions of dynamic repo modules (for all tags) current index was built for,
+	 * they are used to detect changes made by other NMS nodes. Guarded by this object.
+	 */
+	protected final Map<String, String> dynamicRepoVersions = new TreeMap<String, String>();
 	
 	protected final ObjectMapper mapper = new ObjectMapper();
 	
 	protected long lastPullTime = -1;
 	protected String lastCommit = null;
+	protected String lastCommitHash = null;
 	
-	protected NarrativeCategoriesIndex narCatIndex;
-	protected final LoadingCache<MethodId, NarrativeMethodData> methodDataCache;
-	protected final LoadingCache<String, AppFullInfo> appFullInfoCache;
-	protected final LoadingCache<String, AppSpec> appSpecCache;
+	/**
+	 * Current state published to readers. Public getters never lock, they just
+	 * take the latest snapshot. Refreshing code prepares next snapshot under the
+	 * lock of this object and swaps it in.
+	 */
+	protected final AtomicReference<Snapshot> snapshot = new AtomicReference<Snapshot>();
+	protected long lastIndexGeneration = 0;
 	protected static Thread refreshingThread = null;
-    protected boolean inGitFetch = false;
-    protected boolean gitMergeWasDoneAfterFetch = false;
-	protected boolean needToStopRefreshingThread = false;
+	protected volatile boolean needToStopRefreshingThread = false;
 	
 	protected final File tempDir;
 	protected final DynamicRepoDB dynamicRepos;
 	protected final ServiceUrlTemplateEvaluater srvUrlTemplEval;
 	protected final RepoTag defaultTagForGetters;
+	/**
+	 * Pool of threads parsing specs of methods, apps and types in parallel
+	 * during the categories index rebuild.
+	 */
+	protected final ExecutorService indexBuilderPool;
+	/**
+	 * Pool of threads loading cache misses of batched requests. It's separate
+	 * from index rebuild so that requests aren't queued behind it, and it has
+	 * no queue: when all threads are busy the miss is loaded by caller thread.
+	 */
+	protected final ExecutorService batchLoadPool;
+	/**
+	 * Content of dynamic repo images (null means no caching).
+	 */
+	protected final FileContentCache fileContentCache;
+	/**
+	 * Registrations of dynamic repos waiting for free worker are rejected
+	 * when there are too many of them.
+	 */
+	protected static final int MAX_QUEUED_REGISTRATIONS = 100;
+	public static final int DEFAULT_REGISTRATION_THREADS = 4;
+	protected final RepoRegistrationQueue registrationQueue;
+	protected final ExecutorService fileStoragePool;
+	
+	public LocalGitDB(URL gitRepoUrl, String branch, File localPath, int refreshTimeInMinutes, 
+	        int cacheSize, DynamicRepoDB dynamicRepos, File tempDir,
+	        ServiceUrlTemplateEvaluater srvUrlTemplEval, RepoTag defaultTagForGetters,
+	        int indexParallelism, FileContentCache fileContentCache, boolean warmStart,
+	        int registrationThreads, int batchLoadThreads) throws NarrativeMethodStoreInitializationException {
+	    this(gitRepoUrl, branch, localPath, refreshTimeInMinutes, cacheSize, dynamicRepos, tempDir, 
+	            srvUrlTemplEval, defaultTagForGetters, indexParallelism, fileContentCache, warmStart, 
+	            registrationThreads, batchLoadThreads, new ProcessGitBackend(gitRepoUrl));
+	}
 	
+	/**
+	 * Git operations on local clone of spec repo are done by given backend.
+	 */
 	public LocalGitDB(URL gitRepoUrl, String branch, File localPath, int refreshTimeInMinutes, 
 	        int cacheSize, DynamicRepoDB dynamicRepos, File tempDir,
-	        ServiceUrlTemplateEvaluater srvUrlTemplEval, RepoTag defaultTagForGetters) throws NarrativeMethodStoreInitializationException {
+	        ServiceUrlTemplateEvaluater srvUrlTemplEval, RepoTag defaultTagForGetters,
+	        int indexParallelism, FileContentCache fileContentCache, boolean warmStart,
+	        int registrationThreads, int batchLoadThreads, GitBackend git) 
+	                throws NarrativeMethodStoreInitializationException {
 		this.gitRepoUrl = gitRepoUrl;
 		this.gitBranch = branch;
 		this.gitLocalPath = localPath;
 		this.refreshTimeInMinutes = refreshTimeInMinutes;
 		this.cacheSize = cacheSize;
-        this.methodDataCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build(
+		this.git = git;
+		this.warmStart = warmStart;
+		this.indexParallelism = indexParallelism > 0 ? indexParallelism : 
+		        Runtime.getRuntime().availableProcessors();
+		this.indexBuilderPool = Executors.newFixedThreadPool(this.indexParallelism, 
+		        new ThreadFactoryBuilder().setDaemon(true)
+		        .setNameFormat("NarrativeMethodStore-index-%d").build());
+		if (batchLoadThreads <= 0)
+		    batchLoadThreads = this.indexParallelism;
+		this.batchLoadPool = new ThreadPoolExecutor(batchLoadThreads, batchLoadThreads, 
+		        0L, TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>(), 
+		        new ThreadFactoryBuilder().setDaemon(true)
+		        .setNameFormat("NarrativeMethodStore-batch-load-%d").build(), 
+		        new ThreadPoolExecutor.CallerRunsPolicy());
+		if (registrationThreads <= 0)
+		    registrationThreads = DEFAULT_REGISTRATION_THREADS;
+		this.registrationQueue = new RepoRegistrationQueue(registrationThreads, 
+		        MAX_QUEUED_REGISTRATIONS, new RepoRegistrationQueue.JobRunner() {
+		    @Override
+		    public long run(RegistrationJob job) throws NarrativeMethodStoreException {
+		        return runRepoRegistration(job);
+		    }
+		});
+		this.fileStoragePool = Executors.newFixedThreadPool(this.indexParallelism, 
+		        new ThreadFactoryBuilder().setDaemon(true)
+		        .setNameFormat("NarrativeMethodStore-file-storage-%d").build());
+		if (!localPath.exists())
+			localPath.mkdirs();
+		initializeLocalRepo();
+		this.tempDir = tempDir;
+        this.dynamicRepos = dynamicRepos;
+        this.srvUrlTemplEval = srvUrlTemplEval;
+        this.defaultTagForGetters = defaultTagForGetters;
+        this.fileContentCache = fileContentCache;
+        try {
+            loadCategoriesIndex();
+        } catch (NarrativeMethodStoreInitializationException ex) {
+            throw ex;
+        } catch(NarrativeMethodStoreException e) {
+            throw new NarrativeMethodStoreInitializationException(e.getMessage(), e);
+        }
+        startRefreshingThread();
+	}
+		
+	/**
+	 * Creates snapshot with empty caches for given index, per-tag views of methods
+	 * are built here so that readers don't build them.
+	 */
+	protected Snapshot createSnapshot(final NarrativeCategoriesIndex narCatIndex, 
+	        String commitInfo, String commitHash, long refreshDurationMs) {
+	    narCatIndex.buildMethodViews();
+	    LoadingCache<MethodId, NarrativeMethodData> methodDataCache = 
+	            CacheBuilder.newBuilder().maximumSize(cacheSize).build(
                 new CacheLoader<MethodId, NarrativeMethodData>() {
                     @Override
                     public NarrativeMethodData load(MethodId methodId) throws NarrativeMethodStoreException {
                         return loadMethodDataUncached(methodId, narCatIndex);
                     }
                 });
-		this.appFullInfoCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build(
+	    LoadingCache<String, AppFullInfo> appFullInfoCache = 
+	            CacheBuilder.newBuilder().maximumSize(cacheSize).build(
 				new CacheLoader<String, AppFullInfo>() {
 					@Override
 					public AppFullInfo load(String methodId) throws NarrativeMethodStoreException {
 						return loadAppDataUncached(methodId).getAppFullInfo();
 					}
 				});
-		this.appSpecCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build(
+	    LoadingCache<String, AppSpec> appSpecCache = 
+	            CacheBuilder.newBuilder().maximumSize(cacheSize).build(
 				new CacheLoader<String, AppSpec>() {
 					@Override
 					public AppSpec load(String methodId) throws NarrativeMethodStoreException {
 						return loadAppDataUncached(methodId).getAppSpec();
 					}
 				});
-		if (!localPath.exists())
-			localPath.mkdirs();
-		initializeLocalRepo();
-		this.tempDir = tempDir;
-        this.dynamicRepos = dynamicRepos;
-        this.srvUrlTemplEval = srvUrlTemplEval;
-        this.defaultTagForGetters = defaultTagForGetters;
-        try {
-            loadCategoriesIndex();
-        } catch (NarrativeMethodStoreInitializationException ex) {
-            throw ex;
-        } catch(NarrativeMethodStoreException e) {
-            throw new NarrativeMethodStoreInitializationException(e.getMessage(), e);
-        }
+	    return new Snapshot(narCatIndex, methodDataCache, appFullInfoCache, appSpecCache, 
+	            commitInfo, commitHash, ++lastIndexGeneration, refreshDurationMs);
 	}
-		
+	
 	public DynamicRepoDB getDynamicRepos() {
         return dynamicRepos;
     }
 	
 	protected void initializeLocalRepo() throws NarrativeMethodStoreInitializationException {
+		if (warmStart && git.isCloneOf(gitLocalPath, gitBranch)) {
+		    // changes will be fetched by refreshing thread
+		    this.lastCommit = git.getCommitInfo(gitLocalPath);
+		    this.lastCommitHash = git.getHeadCommitHash(gitLocalPath);
+		    System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: existing " +
+		    		"clone is used (commit " + lastCommitHash + ")");
+		    return;
+		}
+		cloneLocalRepo();
+	}
+
+	/**
+	 * Replaces local clone of spec repo by fresh shallow clone of configured branch
+	 * (used on start, before anything is read from local clone).
+	 */
+	protected void cloneLocalRepo() throws NarrativeMethodStoreInitializationException {
 		try {
 			FileUtils.deleteDirectory(gitLocalPath);
 		} catch (IOException e) {
 			throw new NarrativeMethodStoreInitializationException("Cannot clone "+gitRepoUrl+", error deleting old directory: " + e.getMessage(), e);
 		}
-		String cloneStatus = GitUtils.gitClone(gitRepoUrl, gitBranch, gitLocalPath);
+		String cloneStatus = git.gitClone(gitBranch, gitLocalPath);
 		this.lastPullTime = System.currentTimeMillis();
-		this.lastCommit = GitUtils.getCommitInfo(gitLocalPath, gitRepoUrl);
+		this.lastCommit = git.getCommitInfo(gitLocalPath);
+		this.lastCommitHash = git.getHeadCommitHash(gitLocalPath);
 		System.out.println(cloneStatus);
 		try {
 		    gitPull();
 		} catch (Exception ex) {
             System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: " + ex.getMessage());
 		}
-		startRefreshingThread();
 	}
 
 	/**
-	 * Clones the configured git repo to the target local file location, returns standard output of the command
-	 * if successful, otherwise throws an exception.
+	 * Makes fresh clone of spec repo next to current one and replaces current one by
+	 * it. Current clone is kept in case anything fails. Files are read by current
+	 * snapshot meanwhile, so old clone isn't deleted before new one is in place.
 	 */
-	protected String gitClone() throws NarrativeMethodStoreInitializationException {
-		try {
-			return gitCommand("git clone --branch "+gitBranch+" "+gitRepoUrl+" "+gitLocalPath.getAbsolutePath(), 
-					"clone", gitLocalPath.getCanonicalFile().getParentFile());
-		} catch (IOException e) {
-			throw new NarrativeMethodStoreInitializationException("Cannot clone "+gitRepoUrl+": " + e.getMessage(), e);
-		}
+	protected void recloneLocalRepo() throws NarrativeMethodStoreInitializationException {
+	    File localPath = gitLocalPath.getAbsoluteFile();
+	    File newPath = new File(localPath.getParentFile(), localPath.getName() + ".new");
+	    File oldPath = new File(localPath.getParentFile(), localPath.getName() + ".old");
+	    FileUtils.deleteQuietly(newPath);
+	    FileUtils.deleteQuietly(oldPath);
+	    String cloneStatus;
+	    String commit;
+	    String commitHash;
+	    try {
+	        cloneStatus = git.gitClone(gitBranch, newPath);
+	        commit = git.getCommitInfo(newPath);
+	        commitHash = git.getHeadCommitHash(newPath);
+	    } catch (NarrativeMethodStoreInitializationException ex) {
+	        FileUtils.deleteQuietly(newPath);
+	        throw ex;
+	    }
+	    if (!localPath.renameTo(oldPath)) {
+	        FileUtils.deleteQuietly(newPath);
+	        throw new NarrativeMethodStoreInitializationException("Cannot clone " + gitRepoUrl + 
+	                ", error moving old directory: " + localPath);
+	    }
+	    if (!newPath.renameTo(localPath)) {
+	        oldPath.renameTo(localPath);
+	        FileUtils.deleteQuietly(newPath);
+	        throw new NarrativeMethodStoreInitializationException("Cannot clone " + gitRepoUrl + 
+	                ", error moving new directory: " + newPath);
+	    }
+	    FileUtils.deleteQuietly(oldPath);
+	    this.lastPullTime = System.currentTimeMillis();
+	    this.lastCommit = commit;
+	    this.lastCommitHash = commitHash;
+	    System.out.println(cloneStatus);
 	}
-	
+
 	/**
 	 * Runs a git pull on the local git spec repo.
 	 */
 	protected String gitPull() throws NarrativeMethodStoreInitializationException {
-		return gitCommand("git pull", "pull", gitLocalPath);
+		return git.gitPull(gitLocalPath);
 	}
 
 	/**
      * Runs a git fetch on the local git spec repo.
      */
     protected String gitFetch() throws NarrativeMethodStoreInitializationException {
-        return gitCommand("git fetch origin " + gitBranch, "fetch", gitLocalPath);
+        return git.gitFetch(gitLocalPath, gitBranch);
     }
 
     /**
      * Runs a git merge FETCH_HEAD on the local git spec repo.
      */
     protected String gitMergeFetchHead() throws NarrativeMethodStoreInitializationException {
-        return gitCommand("git merge FETCH_HEAD", "merge FETCH_HEAD", gitLocalPath);
+        return git.gitMergeFetchHead(gitLocalPath);
     }
 
-	protected String gitCommand(String fullCmd, String nameOfCmd, File curDir) throws NarrativeMethodStoreInitializationException {
-		try {
-			Process p = Runtime.getRuntime().exec(fullCmd, null, curDir);
-			
-			BufferedReader stdOut = new BufferedReader(new InputStreamReader(p.getInputStream()));
-			BufferedReader stdError = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-			StringBuilder out = new StringBuilder();
-			StringBuilder error = new StringBuilder();
-			Thread outT = readInThread(stdOut, out);
-			Thread errT = readInThread(stdError, error);
-			
-			outT.join();
-			errT.join();
-			int exitcode = p.waitFor();
-			
-			if(exitcode!=0) {
-				throw new NarrativeMethodStoreInitializationException("Cannot " + nameOfCmd + " "+gitRepoUrl+": " + error);
-			}
-			return out.toString();
-		} catch (Exception e) {
-			throw new NarrativeMethodStoreInitializationException("Cannot " + nameOfCmd + " "+gitRepoUrl+": " + e.getMessage(), e);
-		}
-	}
-
-	private Thread readInThread(final BufferedReader stdOut, final StringBuilder out) {
-		Thread ret = new Thread(new Runnable() {
-			@Override
-			public void run() {
-				try {
-					String s1 = null;
-					while ((s1 = stdOut.readLine()) != null) { out.append(s1+"\n"); }
-				} catch (IOException ex) {
-					throw new IllegalStateException(ex);
-				}
-			}
-		});
-		ret.start();
-		return ret;
-	}
-	
 	public void stopRefreshingThread() {
 	    needToStopRefreshingThread = true;
         System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: refreshing thread was requested to stop");
+        indexBuilderPool.shutdownNow();
+        batchLoadPool.shutdownNow();
+        registrationQueue.shutdown();
+        fileStoragePool.shutdownNow();
 	    try {
 	        if (refreshingThread != null)
 	            refreshingThread.interrupt();
@@ -229,7 +349,7 @@ public class LocalGitDB {
 	    }
 	}
 	
-	private void startRefreshingThread() {
+	private synchronized void startRefreshingThread() {
 	    if (refreshingThread != null) {
             System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: refreshing thread was already started earlier");
 	        return;
@@ -239,14 +359,10 @@ public class LocalGitDB {
             public void run() {
                 System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: refreshing thread is starting");
                 while (true) {
-                    inGitFetch = true;
-                    gitMergeWasDoneAfterFetch = false;
                     try {
                         gitFetch();
-                        inGitFetch = false;
-                        checkForChanges();
+                        mergeFetchedChanges();
                     } catch (Throwable ex) {
-                        inGitFetch = false;
                         System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error doing git fetch: " + ex.getMessage());
                     }
                     if (needToStopRefreshingThread)
@@ -268,32 +384,224 @@ public class LocalGitDB {
 	
 	/**
 	 * We need to call this method at the beginning of every public access method.
-	 * This method refreshes file copy of specs-repo if it's necessary and clear
-	 * caches in case something was changed.
+	 * It only makes sure refreshing thread is alive, changes in specs-repo are
+	 * merged and published by refreshing thread itself so that readers never wait
+	 * for git.
 	 */
-	public synchronized void checkForChanges() {
+	public void checkForChanges() {
 	    if (refreshingThread == null) {
             System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: refreshing thread wasn't started for some reason");
 	        startRefreshingThread();
-	        return;
 	    }
-		if (inGitFetch || gitMergeWasDoneAfterFetch)
-			return;
-		gitMergeWasDoneAfterFetch = true;
+	}
+	
+	/**
+	 * Merges changes fetched by refreshing thread into file copy of specs-repo and
+	 * publishes new snapshot in case something was changed. Dynamic repos changed
+	 * by other NMS nodes are picked up together with new commit of specs-repo.
+	 */
+	protected void mergeFetchedChanges() {
+	    if (mergeFetchedSpecs())
+	        refreshChangedDynamicRepos();
+	}
+	
+	/**
+	 * Returns true in case new commit of specs-repo was merged.
+	 */
+	protected synchronized boolean mergeFetchedSpecs() {
 		try {
-			String ret = gitMergeFetchHead();
-			if (ret != null && ret.startsWith("Already up-to-date."))
-				return;
-			String commit = getCommitInfo();
-			if (!commit.equals(lastCommit)) {
-				lastCommit = commit;
-				System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: refreshing caches");
-				// recreate the categories index
-                reloadAll();
+		    // references are read from git database, so nothing is started when
+		    // there are no changes fetched
+		    String fetchedHash = git.getFetchHeadCommitHash(gitLocalPath);
+		    if (fetchedHash != null && fetchedHash.equals(git.getHeadCommitHash(gitLocalPath)))
+		        return false;
+		    try {
+		        gitMergeFetchHead();
+		    } catch (NarrativeMethodStoreInitializationException ex) {
+		        if (fetchedHash == null || git.isAncestor(gitLocalPath, 
+		                git.getHeadCommitHash(gitLocalPath), fetchedHash))
+		            throw ex;  // lock file, disk space and so on, merge is tried after next fetch
+		        // branch history was rewritten, shallow clone can't be fast-forwarded
+		        System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error doing " +
+		        		"git merge FETCH_HEAD, spec repo is cloned again: " + ex.getMessage());
+		        recloneLocalRepo();
+		        reloadAll();
+		        return true;
+		    }
+			String commitHash = git.getHeadCommitHash(gitLocalPath);
+			if (!commitHash.equals(lastCommitHash)) {
+				lastCommit = git.getCommitInfo(gitLocalPath);
+				String prevCommitHash = lastCommitHash;
+				lastCommitHash = commitHash;
+				// patch the categories index or recreate it if changes can't be applied
+				if (!refreshChangedSpecs(prevCommitHash, lastCommitHash))
+				    reloadAll();
+				return true;
 			}
 		} catch (Exception ex) {
 			System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error doing git merge FETCH_HEAD: " + ex.getMessage());
 		}
+		return false;
+	}
+	
+	/**
+	 * Compares versions of dynamic repos stored in DB with those current index was
+	 * built for and refreshes modules which were registered, pushed to tag, disabled
+	 * or enabled since then (by this or other NMS node). It's called outside of
+	 * LocalGitDB lock since every module is refreshed under its own module lock.
+	 */
+	protected void refreshChangedDynamicRepos() {
+	    if (dynamicRepos == null)
+	        return;
+	    try {
+	        Map<String, String> current = loadDynamicRepoVersions();
+	        Map<String, String> indexed;
+	        synchronized (this) {
+	            indexed = new TreeMap<String, String>(dynamicRepoVersions);
+	        }
+	        Set<String> changed = new TreeSet<String>();
+	        for (Map.Entry<String, String> entry : current.entrySet())
+	            if (!entry.getValue().equals(indexed.get(entry.getKey())))
+	                changed.add(entry.getKey());
+	        for (String repoMN : indexed.keySet())
+	            if (!current.containsKey(repoMN))
+	                changed.add(repoMN);
+	        for (String repoMN : changed)
+	            refreshDynamicRepo(repoMN, RepoTag.values());
+	    } catch (Exception ex) {
+	        System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error " +
+	        		"refreshing changed dynamic repos: " + ex.getMessage());
+	    }
+	}
+
+	/**
+	 * Re-parses only those categories, methods, apps and types which were changed
+	 * between two commits of specs-repo and invalidates their cache entries. Returns
+	 * false in case changes can't be applied to current index so that it should be
+	 * completely reloaded.
+	 */
+	protected synchronized boolean refreshChangedSpecs(String fromCommitHash, String toCommitHash) {
+	    Snapshot prev = snapshot.get();
+	    if (fromCommitHash == null || prev == null)
+	        return false;
+	    long startTime = System.currentTimeMillis();
+	    Set<String> catIds = new TreeSet<String>();
+	    Set<String> methodIds = new TreeSet<String>();
+	    Set<String> appIds = new TreeSet<String>();
+	    Set<String> typeNames = new TreeSet<String>();
+	    try {
+	        for (String path : git.getChangedPaths(gitLocalPath, fromCommitHash, 
+	                toCommitHash)) {
+	            String[] parts = path.split("/");
+	            if (parts.length < 2)
+	                continue;
+	            if (parts[0].equals("categories")) {
+	                catIds.add(parts[1]);
+	            } else if (parts[0].equals("methods")) {
+	                methodIds.add(parts[1]);
+	            } else if (parts[0].equals("apps")) {
+	                appIds.add(parts[1]);
+	            } else if (parts[0].equals("types")) {
+	                typeNames.add(parts[1]);
+	            }
+	        }
+	    } catch (NarrativeMethodStoreInitializationException ex) {
+	        System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error detecting " +
+	        		"changed specs: " + ex.getMessage());
+	        return false;
+	    }
+	    NarrativeCategoriesIndex newIndex = new NarrativeCategoriesIndex(prev.narCatIndex);
+	    try {
+	        for (String catId : catIds) {
+	            if (new File(getCategoriesDir(), catId).isDirectory()) {
+	                JsonNode spec = getResourceAsJson("categories/" + catId + "/spec.json");
+	                newIndex.addOrUpdateCategory(catId, spec, null);
+	            } else {
+	                newIndex.removeCategory(catId);
+	            }
+	        }
+	    } catch (Exception ex) {
+	        System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error loading " +
+	        		"changed categories: " + ex.getMessage());
+	        return false;
+	    }
+	    for (String methodId : methodIds) {
+	        MethodId mId = new MethodId(methodId);
+	        if (new File(getMethodsDir(), methodId).isDirectory()) {
+	            newIndex.addOrUpdateMethod(mId, loadMethodBriefInfoUncached(mId, null));
+	        } else {
+	            newIndex.removeMethod(mId);
+	        }
+	    }
+	    for (String appId : appIds) {
+	        if (new File(getAppsDir(), appId).isDirectory()) {
+	            AppBriefInfo abi;
+	            try {
+	                abi = loadAppDataUncached(appId).getAppBriefInfo();
+	            } catch (NarrativeMethodStoreException ex) {
+	                abi = ex.getErrorApp();
+	            }
+	            newIndex.addOrUpdateApp(appId, abi);
+	        } else {
+	            newIndex.removeApp(appId);
+	        }
+	    }
+	    for (String typeName : typeNames) {
+	        if (new File(getTypesDir(), typeName).isDirectory()) {
+	            TypeInfo ti;
+	            try {
+	                ti = loadTypeDataUncached(typeName).getTypeInfo();
+	            } catch (NarrativeMethodStoreException ex) {
+	                ti = ex.getErrorType();
+	            }
+	            newIndex.addOrUpdateType(typeName, ti);
+	        } else {
+	            newIndex.removeType(typeName);
+	        }
+	    }
+	    final Set<MethodId> changedMethods = new HashSet<MethodId>();
+	    for (String methodId : methodIds)
+	        changedMethods.add(new MethodId(methodId));
+	    long duration = System.currentTimeMillis() - startTime;
+	    // new snapshot gets fresh caches so that loads of changed specs still running
+	    // in caches of previous snapshot can't bring old data back
+	    Snapshot next = createSnapshot(newIndex, lastCommit, toCommitHash, duration);
+	    copyCacheEntries(prev.methodDataCache, next.methodDataCache, new Predicate<MethodId>() {
+	        @Override
+	        public boolean apply(MethodId mId) {
+	            return !changedMethods.contains(mId);
+	        }
+	    });
+	    copyCacheEntries(prev.appFullInfoCache, next.appFullInfoCache, notIn(appIds));
+	    copyCacheEntries(prev.appSpecCache, next.appSpecCache, notIn(appIds));
+	    next.screenshots.putAll(prev.screenshots);
+	    snapshot.set(next);
+	    savePersistedIndex(newIndex, toCommitHash);
+	    System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: refreshed " + 
+	            catIds.size() + " categories, " + methodIds.size() + " methods, " + appIds.size() + 
+	            " apps and " + typeNames.size() + " types changed between " + fromCommitHash + 
+	            " and " + toCommitHash + " in " + duration + " ms");
+	    return true;
+	}
+
+	/**
+	 * Copies entries of cache of previous snapshot which are still valid into cache
+	 * of new snapshot.
+	 */
+	private static <K, V> void copyCacheEntries(LoadingCache<K, V> from, LoadingCache<K, V> to,
+	        Predicate<K> isValid) {
+	    for (Map.Entry<K, V> entry : from.asMap().entrySet())
+	        if (isValid.apply(entry.getKey()))
+	            to.put(entry.getKey(), entry.getValue());
+	}
+	
+	private static Predicate<String> notIn(final Set<String> keys) {
+	    return new Predicate<String>() {
+	        @Override
+	        public boolean apply(String key) {
+	            return !keys.contains(key);
+	        }
+	    };
 	}
 
 	public synchronized void hardRefresh() throws NarrativeMethodStoreException {
@@ -302,11 +610,8 @@ public class LocalGitDB {
 	
     public void reloadAll() throws NarrativeMethodStoreException {
         System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: refreshing caches");
-        // recreate the categories index
+        // recreate the categories index, new snapshot comes with empty caches
         loadCategoriesIndex();
-        methodDataCache.invalidateAll();
-        appFullInfoCache.invalidateAll();
-        appSpecCache.invalidateAll();
     }	
 	
 	protected File getMethodsDir() {
@@ -362,25 +667,23 @@ public class LocalGitDB {
 		return ret;
 	}
 
-	public String getCommitInfo() throws NarrativeMethodStoreInitializationException {
-	    return GitUtils.getCommitInfo(gitLocalPath, gitRepoUrl);
+	/**
+	 * Returns description of HEAD commit (output of "git log -n 1") of specs-repo 
+	 * current index was built for, it's updated only when new commit is merged.
+	 */
+	public String getCommitInfo() {
+	    return snapshot.get().commitInfo;
 	}
 	
 	public List<String> listMethodIds(boolean withErrors, String tag) {
 		checkForChanges();
-		List<String> ret = new ArrayList<String>();
-		for (Map.Entry<String, MethodBriefInfo> entry : narCatIndex.getMethods(tag).entrySet()) {
-			if (entry.getValue().getLoadingError() != null && !withErrors)
-				continue;
-			ret.add(entry.getKey());
-		}
-		return ret;
+		return snapshot.get().narCatIndex.getMethodIds(tag, withErrors);
 	}
 
 	public List<String> listAppIds(boolean withErrors) {
 		checkForChanges();
 		List<String> ret = new ArrayList<String>();
-		for (Map.Entry<String, AppBriefInfo> entry : narCatIndex.getApps().entrySet()) {
+		for (Map.Entry<String, AppBriefInfo> entry : snapshot.get().narCatIndex.getApps().entrySet()) {
 			if (entry.getValue().getLoadingError() != null && !withErrors)
 				continue;
 			ret.add(entry.getKey());
@@ -394,8 +697,41 @@ public class LocalGitDB {
 	    return new String(baos.toByteArray(), Charset.forName("utf-8"));
 	}
 	
+	private Map<String, Object> asYamlMap(FilePointer fp) throws NarrativeMethodStoreException, IOException {
+	    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+	    fp.saveToStream(baos);
+	    return YamlUtils.getDocumentAsYamlMap(new ByteArrayInputStream(baos.toByteArray()));
+	}
+	
 	protected NarrativeMethodData loadMethodDataUncached(final MethodId methodId,
 	        NarrativeCategoriesIndex narCatIndex) throws NarrativeMethodStoreException {
+	    return loadMethodDataUncached(methodId, (RepoProvider)null);
+	}
+	
+	/**
+	 * Loads method data using given repo provider for dynamic methods (or requesting
+	 * it from dynamic repo DB in case it's null).
+	 */
+	protected NarrativeMethodData loadMethodDataUncached(final MethodId methodId,
+	        RepoProvider dynamicRepo) throws NarrativeMethodStoreException {
+	    return loadMethodDataUncached(methodId, dynamicRepo, false);
+	}
+	
+	/**
+	 * Loads brief info of method for index (full info and spec are loaded later
+	 * into method data cache).
+	 */
+	protected MethodBriefInfo loadMethodBriefInfoUncached(final MethodId methodId,
+	        RepoProvider dynamicRepo) {
+	    try {
+	        return loadMethodDataUncached(methodId, dynamicRepo, true).getMethodBriefInfo();
+	    } catch (NarrativeMethodStoreException ex) {
+	        return ex.getErrorMethod();
+	    }
+	}
+	
+	protected NarrativeMethodData loadMethodDataUncached(final MethodId methodId,
+	        RepoProvider dynamicRepo, boolean briefOnly) throws NarrativeMethodStoreException {
 		try {
 			// Fetch the resources needed
 			JsonNode spec = null;
@@ -405,13 +741,16 @@ public class LocalGitDB {
 			FileLookup fl = null;
 			String version = null;
 			if (methodId.isDynamic()) {
-			    final RepoProvider repo = dynamicRepos.getRepoDetails(methodId.getRepoModuleName(), methodId.getTag());
+			    final RepoProvider repo = dynamicRepo != null ? dynamicRepo :
+			        dynamicRepos.getRepoDetails(methodId.getRepoModuleName(), methodId.getTag());
 			    if (repo == null)
 			        throw new NarrativeMethodStoreException("Repository " + methodId.getRepoModuleName() + 
 			                " wasn't tagged with " + methodId.getTag() + " tag");
+			    if (dynamicRepo == null)
+			        repo.preloadUINarrativeMethodFiles(Arrays.asList(methodId.getMethodId()));
 			    serviceVersion = repo.getGitCommitHash();
 			    spec = mapper.readTree(asText(repo.getUINarrativeMethodSpec(methodId.getMethodId())));
-			    display = YamlUtils.getDocumentAsYamlMap(asText(repo.getUINarrativeMethodDisplay(methodId.getMethodId())));
+			    display = asYamlMap(repo.getUINarrativeMethodDisplay(methodId.getMethodId()));
 			    tag = methodId.getTag();
 			    fl = new FileLookup() {
                     @Override
@@ -438,7 +777,8 @@ public class LocalGitDB {
 
 			// Initialize the actual data
 			NarrativeMethodData data = new NarrativeMethodData(methodId.getExternalId(), spec, display,
-					fl, methodId.getRepoModuleName(), serviceVersion, srvUrlTemplEval, tag, version);
+					fl, methodId.getRepoModuleName(), serviceVersion, srvUrlTemplEval, tag, version,
+					briefOnly);
 			return data;
 		} catch (NarrativeMethodStoreException ex) {
 			throw ex;
@@ -511,10 +851,11 @@ public class LocalGitDB {
 			throws NarrativeMethodStoreException {
 		checkForChanges();
 		MethodId mId = new MethodId(methodId, notNull(tag));
-		MethodBriefInfo ret = narCatIndex.getAllMethods().get(mId);
+		Snapshot s = snapshot.get();
+		MethodBriefInfo ret = s.narCatIndex.getAllMethods().get(mId);
 		if (ret == null && mId.isDynamic()) {
 	        try {
-	            ret = methodDataCache.get(mId).getMethodBriefInfo();
+	            ret = s.methodDataCache.get(mId).getMethodBriefInfo();
 	        } catch (ExecutionException e) {
 	            if (e.getCause() != null && e.getCause() instanceof NarrativeMethodStoreException)
 	                throw (NarrativeMethodStoreException)e.getCause();
@@ -527,21 +868,25 @@ public class LocalGitDB {
 	public AppBriefInfo getAppBriefInfo(String appId)
 			throws NarrativeMethodStoreException {
 		checkForChanges();
-		return narCatIndex.getApps().get(appId);
+		return snapshot.get().narCatIndex.getApps().get(appId);
 	}
 
 	public TypeInfo getTypeInfo(String typeName)
 			throws NarrativeMethodStoreException {
 		checkForChanges();
-		return narCatIndex.getTypes().get(typeName);
+		return snapshot.get().narCatIndex.getTypes().get(typeName);
 	}
 	
 	public MethodFullInfo getMethodFullInfo(String methodId, String tag)
 			throws NarrativeMethodStoreException {
 		checkForChanges();
-        MethodId mId = new MethodId(methodId, notNull(tag));
+		return getMethodFullInfo(snapshot.get(), new MethodId(methodId, notNull(tag)));
+	}
+	
+	private MethodFullInfo getMethodFullInfo(Snapshot s, MethodId mId)
+	        throws NarrativeMethodStoreException {
 		try {
-			return methodDataCache.get(mId).getMethodFullInfo();
+			return s.methodDataCache.get(mId).getMethodFullInfo();
 		} catch (ExecutionException e) {
 			if (e.getCause() != null && e.getCause() instanceof NarrativeMethodStoreException)
 				throw (NarrativeMethodStoreException)e.getCause();
@@ -552,8 +897,13 @@ public class LocalGitDB {
 	public AppFullInfo getAppFullInfo(String appId)
 			throws NarrativeMethodStoreException {
 		checkForChanges();
+		return getAppFullInfo(snapshot.get(), appId);
+	}
+	
+	private AppFullInfo getAppFullInfo(Snapshot s, String appId)
+	        throws NarrativeMethodStoreException {
 		try {
-			return appFullInfoCache.get(appId);
+			return s.appFullInfoCache.get(appId);
 		} catch (ExecutionException e) {
 			if (e.getCause() != null && e.getCause() instanceof NarrativeMethodStoreException)
 				throw (NarrativeMethodStoreException)e.getCause();
@@ -564,20 +914,30 @@ public class LocalGitDB {
 	public MethodSpec getMethodSpec(String methodId, String tag)
 			throws NarrativeMethodStoreException {
 		checkForChanges();
+		return getMethodSpec(snapshot.get(), new MethodId(methodId, notNull(tag)));
+	}
+	
+	private MethodSpec getMethodSpec(Snapshot s, MethodId mId)
+	        throws NarrativeMethodStoreException {
 		try {
-			return methodDataCache.get(new MethodId(methodId, notNull(tag))).getMethodSpec();
+			return s.methodDataCache.get(mId).getMethodSpec();
 		} catch (ExecutionException e) {
 			if (e.getCause() != null && e.getCause() instanceof NarrativeMethodStoreException)
 				throw (NarrativeMethodStoreException)e.getCause();
-			throw new NarrativeMethodStoreException("Error loading full info for method id=" + methodId + " (" + e.getMessage() + ")", e);
+			throw new NarrativeMethodStoreException("Error loading full info for method id=" + mId.getExternalId() + " (" + e.getMessage() + ")", e);
 		}
 	}
 
 	public AppSpec getAppSpec(String appId)
 			throws NarrativeMethodStoreException {
 		checkForChanges();
+		return getAppSpec(snapshot.get(), appId);
+	}
+	
+	private AppSpec getAppSpec(Snapshot s, String appId)
+	        throws NarrativeMethodStoreException {
 		try {
-			return appSpecCache.get(appId);
+			return s.appSpecCache.get(appId);
 		} catch (ExecutionException e) {
 			if (e.getCause() != null && e.getCause() instanceof NarrativeMethodStoreException)
 				throw (NarrativeMethodStoreException)e.getCause();
@@ -585,6 +945,146 @@ public class LocalGitDB {
 		}
 	}
 
+	/**
+	 * Batched version of getMethodFullInfo(String, String). Methods missing in cache
+	 * are loaded in parallel, results are in the order of methodIds.
+	 */
+	public List<MethodFullInfo> getMethodFullInfo(List<String> methodIds, final String tag)
+	        throws NarrativeMethodStoreException {
+	    checkForChanges();
+	    final Snapshot s = snapshot.get();
+	    return new BatchLoader<MethodFullInfo>() {
+	        @Override
+	        MethodFullInfo loadCached(String id) throws NarrativeMethodStoreException {
+	            NarrativeMethodData data = s.methodDataCache.getIfPresent(new MethodId(id, notNull(tag)));
+	            return data == null ? null : data.getMethodFullInfo();
+	        }
+	        @Override
+	        MethodFullInfo load(String id) throws NarrativeMethodStoreException {
+	            return getMethodFullInfo(s, new MethodId(id, notNull(tag)));
+	        }
+	    }.loadAll(methodIds);
+	}
+
+	/**
+	 * Batched version of getMethodSpec(String, String). Methods missing in cache
+	 * are loaded in parallel, results are in the order of methodIds.
+	 */
+	public List<MethodSpec> getMethodSpec(List<String> methodIds, final String tag)
+	        throws NarrativeMethodStoreException {
+	    checkForChanges();
+	    final Snapshot s = snapshot.get();
+	    return new BatchLoader<MethodSpec>() {
+	        @Override
+	        MethodSpec loadCached(String id) throws NarrativeMethodStoreException {
+	            NarrativeMethodData data = s.methodDataCache.getIfPresent(new MethodId(id, notNull(tag)));
+	            return data == null ? null : data.getMethodSpec();
+	        }
+	        @Override
+	        MethodSpec load(String id) throws NarrativeMethodStoreException {
+	            return getMethodSpec(s, new MethodId(id, notNull(tag)));
+	        }
+	    }.loadAll(methodIds);
+	}
+
+	/**
+	 * Batched version of getAppFullInfo(String). Apps missing in cache are loaded
+	 * in parallel, results are in the order of appIds.
+	 */
+	public List<AppFullInfo> getAppFullInfo(List<String> appIds)
+	        throws NarrativeMethodStoreException {
+	    checkForChanges();
+	    final Snapshot s = snapshot.get();
+	    return new BatchLoader<AppFullInfo>() {
+	        @Override
+	        AppFullInfo loadCached(String id) {
+	            return s.appFullInfoCache.getIfPresent(id);
+	        }
+	        @Override
+	        AppFullInfo load(String id) throws NarrativeMethodStoreException {
+	            return getAppFullInfo(s, id);
+	        }
+	    }.loadAll(appIds);
+	}
+
+	/**
+	 * Batched version of getAppSpec(String). Apps missing in cache are loaded
+	 * in parallel, results are in the order of appIds.
+	 */
+	public List<AppSpec> getAppSpec(List<String> appIds)
+	        throws NarrativeMethodStoreException {
+	    checkForChanges();
+	    final Snapshot s = snapshot.get();
+	    return new BatchLoader<AppSpec>() {
+	        @Override
+	        AppSpec loadCached(String id) {
+	            return s.appSpecCache.getIfPresent(id);
+	        }
+	        @Override
+	        AppSpec load(String id) throws NarrativeMethodStoreException {
+	            return getAppSpec(s, id);
+	        }
+	    }.loadAll(appIds);
+	}
+
+	/**
+	 * Resolves list of IDs taking cached values directly and loading the rest in
+	 * batch load pool of LocalGitDB (or in caller thread when the pool is busy). Error of the first failed ID (in order of IDs) is thrown
+	 * just like it would be for sequential loading.
+	 */
+	private abstract class BatchLoader<T> {
+	    abstract T loadCached(String id) throws NarrativeMethodStoreException;
+	    
+	    abstract T load(String id) throws NarrativeMethodStoreException;
+	    
+	    List<T> loadAll(List<String> ids) throws NarrativeMethodStoreException {
+	        List<T> ret = new ArrayList<T>(ids.size());
+	        Map<Integer, Future<T>> misses = new HashMap<Integer, Future<T>>();
+	        for (int i = 0; i < ids.size(); i++) {
+	            final String id = ids.get(i);
+	            T value = null;
+	            boolean loadInOrder = ids.size() <= 1;
+	            try {
+	                value = loadCached(id);
+	            } catch (NarrativeMethodStoreException ex) {
+	                // the same error will be thrown by load() when its turn comes
+	                loadInOrder = true;
+	            }
+	            if (value == null && !loadInOrder) {
+	                misses.put(i, batchLoadPool.submit(new Callable<T>() {
+	                    @Override
+	                    public T call() throws NarrativeMethodStoreException {
+	                        return load(id);
+	                    }
+	                }));
+	            }
+	            ret.add(value);
+	        }
+	        for (int i = 0; i < ids.size(); i++) {
+	            if (ret.get(i) != null)
+	                continue;
+	            Future<T> future = misses.get(i);
+	            if (future == null) {
+	                ret.set(i, load(ids.get(i)));
+	                continue;
+	            }
+	            try {
+	                ret.set(i, future.get());
+	            } catch (InterruptedException ex) {
+	                Thread.currentThread().interrupt();
+	                throw new NarrativeMethodStoreException("Loading of " + ids.get(i) + 
+	                        " was interrupted", ex);
+	            } catch (ExecutionException ex) {
+	                if (ex.getCause() instanceof NarrativeMethodStoreException)
+	                    throw (NarrativeMethodStoreException)ex.getCause();
+	                throw new NarrativeMethodStoreException("Error loading " + ids.get(i) + 
+	                        " (" + ex.getMessage() + ")", ex);
+	            }
+	        }
+	        return ret;
+	    }
+	}
+
 	public List<String> listCategoryIds() throws NarrativeMethodStoreException {
 		checkForChanges();
 		return listCategoryIdsUncached();
@@ -600,9 +1100,23 @@ public class LocalGitDB {
 	}
 	
 	
+	/**
+	 * Returns number which is incremented every time new index is published.
+	 */
+	public long getIndexGeneration() {
+	    return snapshot.get().generation;
+	}
+	
+	/**
+	 * Returns time in milliseconds spent on building or patching current index.
+	 */
+	public long getLastRefreshDuration() {
+	    return snapshot.get().refreshDurationMs;
+	}
+	
 	public NarrativeCategoriesIndex getCategoriesIndex() {
 		checkForChanges();
-		return narCatIndex;
+		return snapshot.get().narCatIndex;
 	}
 	
 	private File getTempDir() {
@@ -610,30 +1124,57 @@ public class LocalGitDB {
 	}
 	
 	/**
-	 * Reloads from files the entire categories index
+	 * Reloads from files the entire categories index. Specs of methods, apps and types
+	 * are parsed in parallel by index builder pool, results are merged into new index
+	 * in the same order they were listed.
 	 */
 	protected synchronized void loadCategoriesIndex() throws NarrativeMethodStoreException {
+	    long startTime = System.currentTimeMillis();
+	    if (warmStart && snapshot.get() == null) {
+	        try {
+	            Map<String, String> current = loadDynamicRepoVersions();
+	            lastDynamicReposKey = getDynamicReposKey(current);
+	            NarrativeCategoriesIndex saved = PersistedIndex.load(getPersistedIndexFile(), 
+	                    getPersistedIndexKey(lastCommitHash), defaultTagForGetters);
+	            if (saved != null) {
+	                replaceDynamicRepoVersions(current);
+	                long duration = System.currentTimeMillis() - startTime;
+	                snapshot.set(createSnapshot(saved, lastCommit, lastCommitHash, duration));
+	                System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: " +
+	                		"saved index was loaded in " + duration + " ms");
+	                return;
+	            }
+	        } catch (Exception ex) {
+	            System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error " +
+	            		"loading saved index: " + ex.getMessage());
+	        }
+	    }
 	    Set<MethodId> dynamicRepoMethods = new TreeSet<MethodId>();
 	    Map<String, Exception> dynamicRepoModuleNameToLoadingError = new TreeMap<String, Exception>();
+	    // repositories with preloaded UI files of methods, key is "<module>/<tag>"
+	    final Map<String, RepoProvider> dynamicRepoProviders = new HashMap<String, RepoProvider>();
+	    Map<String, String> versions = new TreeMap<String, String>();
         if (dynamicRepos != null) {
-            for (String repoMN : dynamicRepos.listRepoModuleNames(false, null)) {
-                for (RepoTag tag : RepoTag.values()) {
-                    try {
-                        RepoProvider repo = dynamicRepos.getRepoDetails(repoMN, tag);
-                        if (repo == null)
-                            continue;
-                        for (String methodId : repo.listUINarrativeMethodIDs()) {
-                            dynamicRepoMethods.add(new MethodId(repoMN, methodId, tag));
-                        }
-                    } catch (Exception ex) {
-                        if (tag.equals(RepoTag.dev))
-                            dynamicRepoModuleNameToLoadingError.put(repoMN, ex);
+            List<Callable<DynamicRepoMethods>> repoTasks = new ArrayList<Callable<DynamicRepoMethods>>();
+            for (final String repoMN : dynamicRepos.listRepoModuleNames(false, null)) {
+                repoTasks.add(new Callable<DynamicRepoMethods>() {
+                    @Override
+                    public DynamicRepoMethods call() {
+                        return listDynamicRepoMethods(repoMN, RepoTag.values());
                     }
-                }
+                });
+            }
+            for (DynamicRepoMethods drm : invokeAllForIndex(repoTasks)) {
+                dynamicRepoMethods.addAll(drm.methodIds);
+                versions.put(drm.moduleName, drm.versions);
+                for (Map.Entry<RepoTag, RepoProvider> entry : drm.tagToRepo.entrySet())
+                    dynamicRepoProviders.put(drm.moduleName + "/" + entry.getKey(), entry.getValue());
+                if (drm.loadingError != null)
+                    dynamicRepoModuleNameToLoadingError.put(drm.moduleName, drm.loadingError);
             }
         }
 
-        NarrativeCategoriesIndex narCatIndex = new NarrativeCategoriesIndex(defaultTagForGetters);  // create a new index
+        final NarrativeCategoriesIndex narCatIndex = new NarrativeCategoriesIndex(defaultTagForGetters);  // create a new index
         narCatIndex.updateAllDynamicRepoMethods(dynamicRepoMethods, dynamicRepoModuleNameToLoadingError);
 		try {
 			List<String> catIds = listCategoryIdsUncached(); // iterate over each category
@@ -643,51 +1184,257 @@ public class LocalGitDB {
 				Map<String,Object> display = null;
 				narCatIndex.addOrUpdateCategory(catId, spec, display);
 			}
-			
-			List<MethodId> methIds = listMethodIdsUncached(narCatIndex); // iterate over each category
-			for(MethodId mId : methIds) {
-				// TODO: check cache for data instead of loading it all directly; Roman: I doubt it's a good 
-				// idea to check cache first cause narrative engine more likely loads list of all categories 
-				// before any full infos and specs.
-				MethodBriefInfo mbi;
-				try {
-					NarrativeMethodData data = loadMethodDataUncached(mId, narCatIndex);
-					mbi = data.getMethodBriefInfo();
-				} catch (NarrativeMethodStoreException ex) {
-					mbi = ex.getErrorMethod();
-				}
-				narCatIndex.addOrUpdateMethod(mId, mbi);
-			}
-
-			List<String> appIds = listAppIdsUncached(); // iterate over each category
-			for(String appId : appIds) {
-				AppBriefInfo abi;
-				try {
-					NarrativeAppData data = loadAppDataUncached(appId);
-					abi = data.getAppBriefInfo();
-				} catch (NarrativeMethodStoreException ex) {
-					abi = ex.getErrorApp();
-				}
-				narCatIndex.addOrUpdateApp(appId, abi);
-			}
-
-			List<String> typeNames = listTypeNamesUncached(); // iterate over each category
-			for(String typeName : typeNames) {
-				TypeInfo ti;
-				try {
-					NarrativeTypeData data = loadTypeDataUncached(typeName);
-					ti = data.getTypeInfo();
-				} catch (NarrativeMethodStoreException ex) {
-					ti = ex.getErrorType();
-				}
-				narCatIndex.addOrUpdateType(typeName, ti);
-			}
-			this.narCatIndex = narCatIndex;
 		} catch (IOException e) {
 			throw new NarrativeMethodStoreException("Cannot load category index : "+e.getMessage(),e);
 		}
 		
-		return;
+		// TODO: check cache for data instead of loading it all directly; Roman: I doubt it's a good 
+		// idea to check cache first cause narrative engine more likely loads list of all categories 
+		// before any full infos and specs.
+		List<MethodId> methIds = listMethodIdsUncached(narCatIndex);
+		List<Callable<MethodBriefInfo>> methodTasks = new ArrayList<Callable<MethodBriefInfo>>();
+		for (final MethodId mId : methIds) {
+		    methodTasks.add(new Callable<MethodBriefInfo>() {
+		        @Override
+		        public MethodBriefInfo call() {
+		            RepoProvider repo = mId.isDynamic() ? dynamicRepoProviders.get(
+		                    mId.getRepoModuleName() + "/" + mId.getTag()) : null;
+		            return loadMethodBriefInfoUncached(mId, repo);
+		        }
+		    });
+		}
+		List<MethodBriefInfo> mbis = invokeAllForIndex(methodTasks);
+		for (int i = 0; i < methIds.size(); i++)
+		    narCatIndex.addOrUpdateMethod(methIds.get(i), mbis.get(i));
+
+		List<String> appIds = listAppIdsUncached();
+		List<Callable<AppBriefInfo>> appTasks = new ArrayList<Callable<AppBriefInfo>>();
+		for (final String appId : appIds) {
+		    appTasks.add(new Callable<AppBriefInfo>() {
+		        @Override
+		        public AppBriefInfo call() {
+		            try {
+		                return loadAppDataUncached(appId).getAppBriefInfo();
+		            } catch (NarrativeMethodStoreException ex) {
+		                return ex.getErrorApp();
+		            }
+		        }
+		    });
+		}
+		List<AppBriefInfo> abis = invokeAllForIndex(appTasks);
+		for (int i = 0; i < appIds.size(); i++)
+		    narCatIndex.addOrUpdateApp(appIds.get(i), abis.get(i));
+
+		List<String> typeNames = listTypeNamesUncached();
+		List<Callable<TypeInfo>> typeTasks = new ArrayList<Callable<TypeInfo>>();
+		for (final String typeName : typeNames) {
+		    typeTasks.add(new Callable<TypeInfo>() {
+		        @Override
+		        public TypeInfo call() {
+		            try {
+		                return loadTypeDataUncached(typeName).getTypeInfo();
+		            } catch (NarrativeMethodStoreException ex) {
+		                return ex.getErrorType();
+		            }
+		        }
+		    });
+		}
+		List<TypeInfo> tis = invokeAllForIndex(typeTasks);
+		for (int i = 0; i < typeNames.size(); i++)
+		    narCatIndex.addOrUpdateType(typeNames.get(i), tis.get(i));
+		snapshot.set(createSnapshot(narCatIndex, lastCommit, lastCommitHash, 
+		        System.currentTimeMillis() - startTime));
+		replaceDynamicRepoVersions(versions);
+		savePersistedIndex(narCatIndex, lastCommitHash);
+	}
+	
+	private synchronized void replaceDynamicRepoVersions(Map<String, String> versions) {
+	    dynamicRepoVersions.clear();
+	    dynamicRepoVersions.putAll(versions);
+	    lastDynamicReposKey = warmStart ? getDynamicReposKey(dynamicRepoVersions) : null;
+	}
+	
+	/**
+	 * Describes versions of all dynamic repos for all tags. It's built from versions
+	 * index was loaded for (sorted by module name), so DB isn't queried.
+	 */
+	protected static String getDynamicReposKey(Map<String, String> versions) {
+	    StringBuilder ret = new StringBuilder();
+	    for (Map.Entry<String, String> entry : versions.entrySet())
+	        ret.append(entry.getKey()).append(entry.getValue()).append(';');
+	    return ret.toString();
+	}
+	
+	/**
+	 * Reads versions of all enabled dynamic repos from DB.
+	 */
+	protected Map<String, String> loadDynamicRepoVersions() throws NarrativeMethodStoreException {
+	    Map<String, String> ret = new TreeMap<String, String>();
+	    if (dynamicRepos != null)
+	        for (String repoMN : dynamicRepos.listRepoModuleNames(false, null))
+	            ret.put(repoMN, loadModuleVersions(repoMN));
+	    return ret;
+	}
+	
+	/**
+	 * Describes versions of one dynamic repo for all tags.
+	 */
+	protected String loadModuleVersions(String repoMN) {
+	    StringBuilder ret = new StringBuilder();
+	    for (RepoTag tag : RepoTag.values()) {
+	        Long version;
+	        try {
+	            version = dynamicRepos.getRepoLastVersion(repoMN, tag);
+	        } catch (NarrativeMethodStoreException ex) {
+	            version = null;
+	        }
+	        ret.append(':').append(version);
+	    }
+	    return ret.toString();
+	}
+	
+	protected String getPersistedIndexKey(String commitHash) {
+	    return gitRepoUrl + "|" + gitBranch + "|" + commitHash + "|" + lastDynamicReposKey;
+	}
+	
+	protected File getPersistedIndexFile() {
+	    return new File(new File(gitLocalPath, ".git"), "narrative_method_store_index.json.gz");
+	}
+	
+	private void savePersistedIndex(NarrativeCategoriesIndex index, String commitHash) {
+	    if (!warmStart || lastDynamicReposKey == null)
+	        return;
+	    try {
+	        PersistedIndex.save(getPersistedIndexFile(), getPersistedIndexKey(commitHash), index);
+	    } catch (Exception ex) {
+	        System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error " +
+	        		"saving index: " + ex.getMessage());
+	    }
+	}
+	
+	private DynamicRepoMethods listDynamicRepoMethods(String repoMN, List<RepoTag> tags) {
+	    DynamicRepoMethods ret = new DynamicRepoMethods(repoMN);
+	    // versions are read first so that changes made during loading are seen later
+	    ret.versions = loadModuleVersions(repoMN);
+	    for (RepoTag tag : tags) {
+	        try {
+	            RepoProvider repo = dynamicRepos.getRepoDetails(repoMN, tag);
+	            if (repo == null)
+	                continue;
+	            List<String> methodIds = repo.listUINarrativeMethodIDs();
+	            for (String methodId : methodIds) {
+	                ret.methodIds.add(new MethodId(repoMN, methodId, tag));
+	            }
+	            try {
+	                // all UI files of module are loaded in bulk instead of one by one
+	                repo.preloadUINarrativeMethodFiles(methodIds);
+	            } catch (Exception ex) {
+	                System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error " +
+	                		"preloading files of " + repoMN + "/" + tag + ": " + ex.getMessage());
+	            }
+	            ret.tagToRepo.put(tag, repo);
+	        } catch (Exception ex) {
+	            if (tag.equals(RepoTag.dev))
+	                ret.loadingError = ex;
+	        }
+	    }
+	    return ret;
+	}
+	
+	/**
+	 * Runs tasks in index builder pool and returns their results in the order of tasks.
+	 */
+	private <T> List<T> invokeAllForIndex(List<Callable<T>> tasks) 
+	        throws NarrativeMethodStoreException {
+	    return invokeAll(indexBuilderPool, tasks);
+	}
+	
+	private static <T> List<T> invokeAll(ExecutorService pool, List<Callable<T>> tasks) 
+	        throws NarrativeMethodStoreException {
+	    List<T> ret = new ArrayList<T>(tasks.size());
+	    try {
+	        for (Future<T> future : pool.invokeAll(tasks))
+	            ret.add(future.get());
+	    } catch (InterruptedException ex) {
+	        Thread.currentThread().interrupt();
+	        throw new NarrativeMethodStoreException("Index rebuild was interrupted", ex);
+	    } catch (ExecutionException ex) {
+	        Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+	        throw new NarrativeMethodStoreException("Cannot load category index : " + 
+	                cause.getMessage(), cause);
+	    }
+	    return ret;
+	}
+	
+	/**
+	 * Categories index together with caches of data parsed from specs and commit
+	 * of specs-repo they correspond to. Instances are never changed after they are
+	 * published (though caches are filled on demand).
+	 */
+	protected static class Snapshot {
+	    final NarrativeCategoriesIndex narCatIndex;
+	    final LoadingCache<MethodId, NarrativeMethodData> methodDataCache;
+	    final LoadingCache<String, AppFullInfo> appFullInfoCache;
+	    final LoadingCache<String, AppSpec> appSpecCache;
+	    final String commitInfo;
+	    final String commitHash;
+	    final long generation;
+	    final long refreshDurationMs;
+	    final ConcurrentMap<ScreenshotKey, FilePointer> screenshots = 
+	            new ConcurrentHashMap<ScreenshotKey, FilePointer>();
+	    
+	    Snapshot(NarrativeCategoriesIndex narCatIndex, 
+	            LoadingCache<MethodId, NarrativeMethodData> methodDataCache,
+	            LoadingCache<String, AppFullInfo> appFullInfoCache,
+	            LoadingCache<String, AppSpec> appSpecCache, String commitInfo, 
+	            String commitHash, long generation, long refreshDurationMs) {
+	        this.narCatIndex = narCatIndex;
+	        this.methodDataCache = methodDataCache;
+	        this.appFullInfoCache = appFullInfoCache;
+	        this.appSpecCache = appSpecCache;
+	        this.commitInfo = commitInfo;
+	        this.commitHash = commitHash;
+	        this.generation = generation;
+	        this.refreshDurationMs = refreshDurationMs;
+	    }
+	}
+	
+	/**
+	 * Screenshot of dynamic repo method (method ID includes tag).
+	 */
+	protected static class ScreenshotKey {
+	    final MethodId methodId;
+	    final String screenshotId;
+	    
+	    ScreenshotKey(MethodId methodId, String screenshotId) {
+	        this.methodId = methodId;
+	        this.screenshotId = screenshotId;
+	    }
+	    
+	    @Override
+	    public int hashCode() {
+	        return 31 * methodId.hashCode() + screenshotId.hashCode();
+	    }
+	    
+	    @Override
+	    public boolean equals(Object obj) {
+	        if (!(obj instanceof ScreenshotKey))
+	            return false;
+	        ScreenshotKey other = (ScreenshotKey)obj;
+	        return methodId.equals(other.methodId) && screenshotId.equals(other.screenshotId);
+	    }
+	}
+	
+	private static class DynamicRepoMethods {
+	    final String moduleName;
+	    final List<MethodId> methodIds = new ArrayList<MethodId>();
+	    final Map<RepoTag, RepoProvider> tagToRepo = new HashMap<RepoTag, RepoProvider>();
+	    Exception loadingError = null;
+	    String versions = null;
+	    
+	    DynamicRepoMethods(String moduleName) {
+	        this.moduleName = moduleName;
+	    }
 	}
 
     public String getFullMethodName(String repoModuleName, String shortMethodId) {
@@ -706,8 +1453,7 @@ public class LocalGitDB {
 	
 	protected Map<String,Object> getResourceAsYamlMap(String path) throws IOException {
 		File f = new File(gitLocalPath, path);
-		String document = TextUtils.text(f);
-		return YamlUtils.getDocumentAsYamlMap(document);
+		return YamlUtils.getDocumentAsYamlMap(f);
 	}
 
 	protected JsonNode getAsJson(File f) throws JsonProcessingException, IOException {
@@ -728,43 +1474,192 @@ public class LocalGitDB {
         return found ? 1L : 0L;
 	}
 
+	/**
+	 * Registers repo through registration queue waiting for the end of registration,
+	 * so that registered methods are listed (or error is thrown) when it returns.
+	 */
 	public long registerRepo(String userId, String url, String commitHash) throws NarrativeMethodStoreException {
-	    RepoProvider pvd = null;
+	    return submitRepoRegistration(userId, url, commitHash).waitForResult();
+	}
+	
+	public RegistrationJob submitRepoRegistration(String userId, String url, String commitHash) 
+	        throws NarrativeMethodStoreException {
+	    return registrationQueue.submit(userId, url, commitHash);
+	}
+	
+	/**
+	 * Returns queued, running and recently finished registrations (optionally for given url).
+	 * Admins see all registrations, other users see only those they submitted.
+	 */
+	public List<RegistrationJob> listRepoRegistrations(String userId, String url) {
+	    List<RegistrationJob> ret = registrationQueue.listJobs(url);
+	    if (dynamicRepos != null && dynamicRepos.isAdmin(userId))
+	        return ret;
+	    List<RegistrationJob> own = new ArrayList<RegistrationJob>();
+	    for (RegistrationJob job : ret)
+	        if (job.getUserId().equals(userId))
+	            own.add(job);
+	    return own;
+	}
+	
+	protected long runRepoRegistration(final RegistrationJob job) throws NarrativeMethodStoreException {
+	    FileRepoProvider pvd = null;
 	    try {
-	        pvd = new GitHubRepoProvider(new URL(url), commitHash, getTempDir());
-            String serviceVersion = pvd.getGitCommitHash();
-            StringBuilder errors = new StringBuilder();
-            for (String methodId : pvd.listUINarrativeMethodIDs()) {
-                try {
-                    JsonNode spec = mapper.readTree(asText(pvd.getUINarrativeMethodSpec(methodId)));
-                    Map<String, Object> display = YamlUtils.getDocumentAsYamlMap(asText(
-                            pvd.getUINarrativeMethodDisplay(methodId)));
-                    // Initialize the actual data
-                    new NarrativeMethodData(pvd.getModuleName() + "/" + methodId, 
-                            spec, display, createFileLookup(new File(getMethodsDir(), methodId)), 
-                            pvd.getModuleName(), serviceVersion, srvUrlTemplEval, RepoTag.dev, pvd.getModuleVersion());
-                } catch (Exception ex) {
-                    if (errors.length() > 0)
-                        errors.append("; ");
-                    errors.append("Error parsing method [" + methodId + "]: " + ex.getMessage());
-                }
-            }
-            if (errors.length() > 0)
-                throw new NarrativeMethodStoreException(errors.toString());
-	        dynamicRepos.registerRepo(userId, pvd);
-	        // TODO: Index invalidation is temp solution, we need to substitute it by small 
-	        // corrections related to this particular repo.
-	        hardRefresh();
-	        return dynamicRepos.getRepoLastVersion(pvd.getModuleName(), null);
+	        job.setStage(Stage.cloning);
+	        pvd = new GitHubRepoProvider(new URL(job.getUrl()), job.getCommitHash(), getTempDir());
+	        final String moduleName = pvd.getModuleName();
+	        job.setModuleName(moduleName);
+	        job.setStage(Stage.validating);
+	        final String serviceVersion = pvd.getGitCommitHash();
+	        final String moduleVersion = pvd.getModuleVersion();
+	        final RepoProvider repo = pvd;
+	        List<Callable<String>> tasks = new ArrayList<Callable<String>>();
+	        for (final String methodId : pvd.listUINarrativeMethodIDs()) {
+	            tasks.add(new Callable<String>() {
+	                @Override
+	                public String call() {
+	                    try {
+	                        JsonNode spec = mapper.readTree(asText(repo.getUINarrativeMethodSpec(methodId)));
+	                        Map<String, Object> display = asYamlMap(
+	                                repo.getUINarrativeMethodDisplay(methodId));
+	                        // Initialize the actual data
+	                        new NarrativeMethodData(moduleName + "/" + methodId, 
+	                                spec, display, createFileLookup(new File(getMethodsDir(), methodId)), 
+	                                moduleName, serviceVersion, srvUrlTemplEval, RepoTag.dev, moduleVersion);
+	                        return null;
+	                    } catch (Exception ex) {
+	                        return "Error parsing method [" + methodId + "]: " + ex.getMessage();
+	                    }
+	                }
+	            });
+	        }
+	        StringBuilder errors = new StringBuilder();
+	        for (String error : invokeAll(fileStoragePool, tasks)) {
+	            if (error == null)
+	                continue;
+	            if (errors.length() > 0)
+	                errors.append("; ");
+	            errors.append(error);
+	        }
+	        if (errors.length() > 0)
+	            throw new NarrativeMethodStoreException(errors.toString());
+	        Lock moduleLock = registrationQueue.getModuleLock(moduleName);
+	        moduleLock.lock();
+	        try {
+	            job.setStage(Stage.storing);
+	            pvd.storeFiles(dynamicRepos, fileStoragePool, new FileRepoProvider.FileStorageListener() {
+	                @Override
+	                public void filesToStore(int count) {
+	                    job.setFilesTotal(count);
+	                }
+	                @Override
+	                public void fileStored() {
+	                    job.fileStored();
+	                }
+	            });
+	            dynamicRepos.registerRepo(job.getUserId(), pvd);
+	            job.setStage(Stage.indexing);
+	            // only dev tag points to new version
+	            refreshDynamicRepo(moduleName, Arrays.asList(RepoTag.dev));
+	            return dynamicRepos.getRepoLastVersion(moduleName, null);
+	        } finally {
+	            moduleLock.unlock();
+	        }
 	    } catch (MalformedURLException ex) {
 	        throw new NarrativeMethodStoreException("Error parsing repository url: " + 
-	                url + " (" + ex.getMessage() + ")", ex);
+	                job.getUrl() + " (" + ex.getMessage() + ")", ex);
 	    } finally {
 	        if (pvd != null)
 	            pvd.dispose();
 	    }
 	}
 	
+	/**
+	 * Reloads methods of one dynamic repo module for given tags and publishes new
+	 * snapshot with patched index. Only cache entries of these methods are dropped.
+	 * Methods are loaded outside of LocalGitDB lock so readers and other modules 
+	 * aren't blocked. Whole refresh runs under module lock (the one registrations
+	 * take), so refreshes of the same module can't publish older state after newer.
+	 */
+	protected void refreshDynamicRepo(String moduleName, List<RepoTag> tags) 
+	        throws NarrativeMethodStoreException {
+	    Lock moduleLock = registrationQueue.getModuleLock(moduleName);
+	    moduleLock.lock();
+	    try {
+	        loadAndPatchDynamicRepo(moduleName, tags);
+	    } finally {
+	        moduleLock.unlock();
+	    }
+	}
+	
+	private void loadAndPatchDynamicRepo(final String moduleName, final List<RepoTag> tags) 
+	        throws NarrativeMethodStoreException {
+	    long startTime = System.currentTimeMillis();
+	    final DynamicRepoMethods drm = dynamicRepos.isRepoRegistered(moduleName, false) ?
+	            listDynamicRepoMethods(moduleName, tags) : new DynamicRepoMethods(moduleName);
+	    List<Callable<MethodBriefInfo>> methodTasks = new ArrayList<Callable<MethodBriefInfo>>();
+	    for (final MethodId mId : drm.methodIds) {
+	        methodTasks.add(new Callable<MethodBriefInfo>() {
+	            @Override
+	            public MethodBriefInfo call() {
+	                return loadMethodBriefInfoUncached(mId, drm.tagToRepo.get(mId.getTag()));
+	            }
+	        });
+	    }
+	    List<MethodBriefInfo> mbis = invokeAllForIndex(methodTasks);
+	    Map<MethodId, MethodBriefInfo> newMethods = new TreeMap<MethodId, MethodBriefInfo>();
+	    for (int i = 0; i < drm.methodIds.size(); i++)
+	        newMethods.put(drm.methodIds.get(i), mbis.get(i));
+	    synchronized (this) {
+	        Snapshot prev = snapshot.get();
+	        if (prev == null) {
+	            loadCategoriesIndex();
+	            return;
+	        }
+	        NarrativeCategoriesIndex newIndex = new NarrativeCategoriesIndex(prev.narCatIndex);
+	        final Set<MethodId> changed = newIndex.updateDynamicRepoModule(moduleName, 
+	                new HashSet<RepoTag>(tags), newMethods, drm.loadingError);
+	        long duration = System.currentTimeMillis() - startTime;
+	        Snapshot next = createSnapshot(newIndex, prev.commitInfo, prev.commitHash, duration);
+	        copyCacheEntries(prev.methodDataCache, next.methodDataCache, new Predicate<MethodId>() {
+	            @Override
+	            public boolean apply(MethodId cached) {
+	                return !changed.contains(cached) && !isRefreshed(cached, moduleName, tags);
+	            }
+	        });
+	        copyCacheEntries(prev.appFullInfoCache, next.appFullInfoCache, 
+	                Predicates.<String>alwaysTrue());
+	        copyCacheEntries(prev.appSpecCache, next.appSpecCache, Predicates.<String>alwaysTrue());
+	        // screenshots of other modules and tags are still valid
+	        for (Map.Entry<ScreenshotKey, FilePointer> entry : prev.screenshots.entrySet())
+	            if (!isRefreshed(entry.getKey().methodId, moduleName, tags))
+	                next.screenshots.put(entry.getKey(), entry.getValue());
+	        snapshot.set(next);
+	        if (drm.versions == null) {
+	            dynamicRepoVersions.remove(moduleName);
+	        } else {
+	            dynamicRepoVersions.put(moduleName, drm.versions);
+	        }
+	        if (warmStart)
+	            lastDynamicReposKey = getDynamicReposKey(dynamicRepoVersions);
+	        savePersistedIndex(newIndex, prev.commitHash);
+	        System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: refreshed " + 
+	                newMethods.size() + " methods of module " + moduleName + " for tags " + tags + 
+	                " in " + duration + " ms");
+	    }
+	}
+	
+	/**
+	 * Tells if method belongs to tags of module being refreshed. Methods requested by 
+	 * commit hash are dropped when module state changes (all tags are refreshed).
+	 */
+	private static boolean isRefreshed(MethodId methodId, String moduleName, 
+	        List<RepoTag> tags) {
+	    return moduleName.equals(methodId.getRepoModuleName()) && 
+	            (tags.contains(methodId.getTag()) || (methodId.getTag().isGitCommitHash() && 
+	                    tags.containsAll(RepoTag.values())));
+	}
+	
 	private void checkIfRepoDisabled(String moduleName, Long withDisabled) 
 	        throws NarrativeMethodStoreException {
 	    if (bool(withDisabled))
@@ -828,8 +1723,16 @@ public class LocalGitDB {
 	
 	public void setRepoState(String userId, String moduleName, String repoState)
 	        throws NarrativeMethodStoreException {
-	    dynamicRepos.setRepoState(userId, moduleName, RepoState.valueOf(repoState));
-	    hardRefresh();
+	    // state change and refresh are ordered with registrations of the module
+	    Lock moduleLock = registrationQueue.getModuleLock(moduleName);
+	    moduleLock.lock();
+	    try {
+	        dynamicRepos.setRepoState(userId, moduleName, RepoState.valueOf(repoState));
+	        // disabled modules are excluded from all tags
+	        refreshDynamicRepo(moduleName, RepoTag.values());
+	    } finally {
+	        moduleLock.unlock();
+	    }
 	}
 	
 	public String getRepoState(String moduleName) throws NarrativeMethodStoreException {
@@ -842,8 +1745,39 @@ public class LocalGitDB {
 	
 	public void saveScreenshotIntoStream(String moduleName, String methodId, 
 	        String screenshotId, String tag, OutputStream os) throws NarrativeMethodStoreException {
-	    dynamicRepos.getRepoDetails(moduleName, notNull(tag)).getScreenshot(methodId, 
-	            screenshotId).saveToStream(os);
+	    saveFileIntoStream(getScreenshot(moduleName, methodId, screenshotId, tag), os);
+	}
+	
+	/**
+	 * Returns pointer to screenshot of dynamic repo method, file id of pointer 
+	 * changes whenever content changes so it can be used as HTTP validator.
+	 * Pointers are kept until repo versions change (next index snapshot).
+	 */
+	public FilePointer getScreenshot(String moduleName, String methodId, 
+	        String screenshotId, String tag) throws NarrativeMethodStoreException {
+	    RepoTag repoTag = notNull(tag);
+	    Snapshot snap = snapshot.get();
+	    ScreenshotKey key = new ScreenshotKey(new MethodId(moduleName, methodId, repoTag), 
+	            screenshotId);
+	    FilePointer ret = snap.screenshots.get(key);
+	    if (ret == null) {
+	        ret = dynamicRepos.getRepoDetails(moduleName, repoTag).getScreenshot(methodId, 
+	                screenshotId);
+	        snap.screenshots.put(key, ret);
+	    }
+	    return ret;
+	}
+	
+	/**
+	 * Writes content of dynamic repo file into stream using content cache.
+	 */
+	public void saveFileIntoStream(FilePointer fp, OutputStream os) 
+	        throws NarrativeMethodStoreException {
+	    if (fileContentCache != null) {
+	        fileContentCache.saveToStream(fp, os);
+	    } else {
+	        fp.saveToStream(os);
+	    }
 	}
 	
 	/*public long registerRepo(String userId, String moduleName, MethodSpec methodSpec, 
@@ -867,7 +1801,15 @@ public class LocalGitDB {
 	
     public void pushRepoToTag(String repoModuleName, String tagName, String userId) 
             throws NarrativeMethodStoreException {
-        dynamicRepos.pushRepoToTag(repoModuleName, RepoTag.valueOf(tagName), userId);
-        hardRefresh();
+        RepoTag tag = RepoTag.valueOf(tagName);
+        // push and refresh are ordered with registrations of the module
+        Lock moduleLock = registrationQueue.getModuleLock(repoModuleName);
+        moduleLock.lock();
+        try {
+            dynamicRepos.pushRepoToTag(repoModuleName, tag, userId);
+            refreshDynamicRepo(repoModuleName, Arrays.asList(tag));
+        } finally {
+            moduleLock.unlock();
+        }
     }
 }
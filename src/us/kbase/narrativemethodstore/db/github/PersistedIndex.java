@@ -0,0 +1,118 @@
+package us.kbase.narrativemethodstore.db.github;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import us.kbase.narrativemethodstore.AppBriefInfo;
+import us.kbase.narrativemethodstore.Category;
+import us.kbase.narrativemethodstore.MethodBriefInfo;
+import us.kbase.narrativemethodstore.TypeInfo;
+import us.kbase.narrativemethodstore.db.NarrativeCategoriesIndex;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+
+/**
+ * Categories index saved into gzipped JSON file. It's used for fast service start
+ * when neither specs-repo commit nor versions of dynamic repos were changed since
+ * index was saved (this state is described by key).
+ */
+public class PersistedIndex {
+    private static final int FORMAT_VERSION = 1;
+    private static final ObjectMapper mapper = new ObjectMapper().configure(
+            DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    public Integer formatVersion;
+    public String key;
+    public Map<String, Category> categories;
+    public Map<String, MethodBriefInfo> methods;
+    public Map<String, AppBriefInfo> apps;
+    public Map<String, TypeInfo> types;
+    public List<String> dynamicRepoMethods;
+    public Map<String, String> dynamicRepoErrors;
+
+    public static void save(File file, String key, NarrativeCategoriesIndex index)
+            throws IOException {
+        PersistedIndex data = new PersistedIndex();
+        data.formatVersion = FORMAT_VERSION;
+        data.key = key;
+        data.categories = index.getCategories();
+        data.methods = new TreeMap<String, MethodBriefInfo>();
+        for (Map.Entry<MethodId, MethodBriefInfo> entry : index.getAllMethods().entrySet())
+            data.methods.put(entry.getKey().toString(), entry.getValue());
+        data.apps = index.getApps();
+        data.types = index.getTypes();
+        data.dynamicRepoMethods = new ArrayList<String>();
+        for (MethodId methodId : index.getDynamicRepoMethods())
+            data.dynamicRepoMethods.add(methodId.toString());
+        data.dynamicRepoErrors = new TreeMap<String, String>();
+        for (Map.Entry<String, Exception> entry :
+                index.getDynamicRepoModuleNameToLoadingError().entrySet())
+            data.dynamicRepoErrors.put(entry.getKey(), entry.getValue().getMessage());
+        // file is replaced only when it's completely written
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        OutputStream os = new GZIPOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tempFile)));
+        try {
+            mapper.writeValue(os, data);
+        } finally {
+            os.close();
+        }
+        if (file.exists() && !file.delete())
+            throw new IOException("Can't delete old version of " + file);
+        if (!tempFile.renameTo(file))
+            throw new IOException("Can't rename " + tempFile + " into " + file);
+    }
+
+    /**
+     * Returns saved index or null in case there is no index saved for given key.
+     */
+    public static NarrativeCategoriesIndex load(File file, String key,
+            RepoTag defaultTagForGetters) throws IOException {
+        if (!file.exists())
+            return null;
+        PersistedIndex data;
+        InputStream is = new GZIPInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+        try {
+            data = mapper.readValue(is, PersistedIndex.class);
+        } finally {
+            is.close();
+        }
+        if (data.formatVersion == null || data.formatVersion != FORMAT_VERSION ||
+                !key.equals(data.key))
+            return null;
+        NarrativeCategoriesIndex ret = new NarrativeCategoriesIndex(defaultTagForGetters);
+        ret.updateAllCategories(new HashMap<String, Category>(data.categories));
+        Map<MethodId, MethodBriefInfo> methods = new TreeMap<MethodId, MethodBriefInfo>();
+        for (Map.Entry<String, MethodBriefInfo> entry : data.methods.entrySet())
+            methods.put(new MethodId(entry.getKey()), entry.getValue());
+        ret.updateAllMethods(methods);
+        ret.updateAllApps(new HashMap<String, AppBriefInfo>(data.apps));
+        ret.updateAllTypes(new HashMap<String, TypeInfo>(data.types));
+        Set<MethodId> dynamicRepoMethods = new TreeSet<MethodId>();
+        for (String methodId : data.dynamicRepoMethods)
+            dynamicRepoMethods.add(new MethodId(methodId));
+        Map<String, Exception> errors = new TreeMap<String, Exception>();
+        for (Map.Entry<String, String> entry : data.dynamicRepoErrors.entrySet())
+            errors.put(entry.getKey(), new NarrativeMethodStoreException(entry.getValue()));
+        ret.updateAllDynamicRepoMethods(dynamicRepoMethods, errors);
+        return ret;
+    }
+}
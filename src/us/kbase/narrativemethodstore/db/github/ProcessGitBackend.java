@@ -0,0 +1,93 @@
+package us.kbase.narrativemethodstore.db.github;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreInitializationException;
+
+/**
+ * Git backend running git command line client for operations changing repository
+ * (clone, fetch, merge) and reading references directly from git database.
+ */
+public class ProcessGitBackend implements GitBackend {
+    private final URL gitRepoUrl;
+
+    public ProcessGitBackend(URL gitRepoUrl) {
+        this.gitRepoUrl = gitRepoUrl;
+    }
+
+    @Override
+    public String gitClone(String branch, File localPath)
+            throws NarrativeMethodStoreInitializationException {
+        return branch == null ? GitUtils.gitClone(gitRepoUrl, localPath) : 
+            GitUtils.gitClone(gitRepoUrl, branch, localPath);
+    }
+
+    @Override
+    public boolean isCloneOf(File localPath, String branch) {
+        if (!new File(localPath, ".git").isDirectory())
+            return false;
+        try {
+            String url = GitUtils.gitCommand("git config --get remote.origin.url", 
+                    "config", localPath, gitRepoUrl).trim();
+            String localBranch = GitUtils.gitCommand("git rev-parse --abbrev-ref HEAD", 
+                    "rev-parse", localPath, gitRepoUrl).trim();
+            return url.equals(gitRepoUrl.toString()) && localBranch.equals(branch);
+        } catch (NarrativeMethodStoreInitializationException ex) {
+            return false;
+        }
+    }
+
+    @Override
+    public String gitPull(File localPath) throws NarrativeMethodStoreInitializationException {
+        return GitUtils.gitPull(localPath, gitRepoUrl);
+    }
+
+    @Override
+    public String gitFetch(File localPath, String branch)
+            throws NarrativeMethodStoreInitializationException {
+        return GitUtils.gitCommand("git fetch origin " + branch, "fetch", localPath, gitRepoUrl);
+    }
+
+    @Override
+    public String gitMergeFetchHead(File localPath)
+            throws NarrativeMethodStoreInitializationException {
+        return GitUtils.gitCommand("git merge --ff-only FETCH_HEAD", "merge FETCH_HEAD", localPath, gitRepoUrl);
+    }
+
+    @Override
+    public boolean isAncestor(File localPath, String ancestorCommitHash, String commitHash)
+            throws NarrativeMethodStoreInitializationException {
+        return GitUtils.gitIsAncestor(localPath, gitRepoUrl, ancestorCommitHash, commitHash);
+    }
+
+    @Override
+    public String getHeadCommitHash(File localPath)
+            throws NarrativeMethodStoreInitializationException {
+        return GitUtils.getCommitHash(localPath, gitRepoUrl);
+    }
+
+    @Override
+    public String getFetchHeadCommitHash(File localPath)
+            throws NarrativeMethodStoreInitializationException {
+        try {
+            return GitUtils.getFetchHeadCommitHash(localPath);
+        } catch (IOException ex) {
+            throw new NarrativeMethodStoreInitializationException("Cannot read FETCH_HEAD of " + 
+                    gitRepoUrl + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public String getCommitInfo(File localPath) throws NarrativeMethodStoreInitializationException {
+        return GitUtils.getCommitInfo(localPath, gitRepoUrl);
+    }
+
+    @Override
+    public List<String> getChangedPaths(File localPath, String fromCommitHash,
+            String toCommitHash) throws NarrativeMethodStoreInitializationException {
+        return GitUtils.gitDiffNameOnly(localPath, gitRepoUrl, fromCommitHash, toCommitHash);
+    }
+}
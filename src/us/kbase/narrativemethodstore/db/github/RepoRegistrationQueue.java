@@ -0,0 +1,259 @@
+package us.kbase.narrativemethodstore.db.github;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+
+/**
+ * Queue of repository registrations processed by bounded pool of workers.
+ * Registrations of the same module are serialized through module locks,
+ * registrations of different modules run in parallel.
+ */
+public class RepoRegistrationQueue {
+    private static final int MAX_FINISHED_JOBS = 100;
+
+    private final ThreadPoolExecutor workers;
+    private final JobRunner runner;
+    private final AtomicLong lastJobId = new AtomicLong(0);
+    private final Map<Long, RegistrationJob> jobs = new LinkedHashMap<Long, RegistrationJob>();
+    private final ConcurrentMap<String, Lock> moduleLocks = new ConcurrentHashMap<String, Lock>();
+
+    public RepoRegistrationQueue(int workerCount, int maxQueuedJobs, JobRunner runner) {
+        this.runner = runner;
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(maxQueuedJobs), new ThreadFactoryBuilder()
+                .setDaemon(true).setNameFormat("NarrativeMethodStore-registration-%d").build());
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Puts registration into queue, fails in case queue is full.
+     */
+    public RegistrationJob submit(String userId, String url, String commitHash)
+            throws NarrativeMethodStoreException {
+        final RegistrationJob job = new RegistrationJob(lastJobId.incrementAndGet(), userId,
+                url, commitHash);
+        synchronized (jobs) {
+            jobs.put(job.getId(), job);
+        }
+        try {
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    process(job);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            job.finish(null, new NarrativeMethodStoreException("Registration queue is full, " +
+            		"please try again later"));
+            throw job.error;
+        }
+        return job;
+    }
+
+    private void process(RegistrationJob job) {
+        try {
+            job.finish(runner.run(job), null);
+        } catch (NarrativeMethodStoreException ex) {
+            job.finish(null, ex);
+        } catch (Throwable ex) {
+            job.finish(null, new NarrativeMethodStoreException(ex.getMessage(), ex));
+        }
+        if (job.error != null)
+            System.err.println("[" + new Date() + "] NarrativeMethodStore.RepoRegistrationQueue: " +
+            		"error registering " + job.url + ": " + job.error.getMessage());
+        synchronized (jobs) {
+            // older finished jobs are forgotten
+            int finishedToRemove = -MAX_FINISHED_JOBS;
+            for (RegistrationJob other : jobs.values())
+                if (other.isFinished())
+                    finishedToRemove++;
+            for (Iterator<RegistrationJob> it = jobs.values().iterator();
+                    finishedToRemove > 0 && it.hasNext();) {
+                if (it.next().isFinished()) {
+                    it.remove();
+                    finishedToRemove--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns lock which should be held during changes of given module.
+     */
+    public Lock getModuleLock(String moduleName) {
+        Lock ret = moduleLocks.get(moduleName);
+        if (ret == null) {
+            moduleLocks.putIfAbsent(moduleName, new ReentrantLock());
+            ret = moduleLocks.get(moduleName);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns queued, running and recently finished jobs (optionally for given repo url).
+     */
+    public List<RegistrationJob> listJobs(String url) {
+        List<RegistrationJob> ret = new ArrayList<RegistrationJob>();
+        synchronized (jobs) {
+            for (RegistrationJob job : jobs.values())
+                if (url == null || url.equals(job.url))
+                    ret.add(job);
+        }
+        return Collections.unmodifiableList(ret);
+    }
+
+    public int getQueueSize() {
+        return workers.getQueue().size();
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    public static enum Stage {
+        queued, cloning, validating, storing, indexing, done, error;
+    }
+
+    public static interface JobRunner {
+        /**
+         * Processes registration and returns new version of repository.
+         */
+        public long run(RegistrationJob job) throws NarrativeMethodStoreException;
+    }
+
+    public static class RegistrationJob {
+        private final long id;
+        private final String userId;
+        private final String url;
+        private final String commitHash;
+        private final long queuedTime = System.currentTimeMillis();
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private final AtomicInteger filesStored = new AtomicInteger(0);
+        private volatile Stage stage = Stage.queued;
+        private volatile String moduleName = null;
+        private volatile int filesTotal = 0;
+        private volatile Long version = null;
+        private volatile Long finishedTime = null;
+        private volatile NarrativeMethodStoreException error = null;
+
+        RegistrationJob(long id, String userId, String url, String commitHash) {
+            this.id = id;
+            this.userId = userId;
+            this.url = url;
+            this.commitHash = commitHash;
+        }
+
+        private void finish(Long version, NarrativeMethodStoreException error) {
+            this.version = version;
+            this.error = error;
+            this.finishedTime = System.currentTimeMillis();
+            this.stage = error == null ? Stage.done : Stage.error;
+            finished.countDown();
+        }
+
+        /**
+         * Waits for the end of registration and returns new version of repository
+         * or throws registration error.
+         */
+        public long waitForResult() throws NarrativeMethodStoreException {
+            try {
+                finished.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new NarrativeMethodStoreException("Waiting for registration of " + url +
+                        " was interrupted", ex);
+            }
+            if (error != null)
+                throw error;
+            return version;
+        }
+
+        public boolean isFinished() {
+            return finishedTime != null;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getCommitHash() {
+            return commitHash;
+        }
+
+        public Stage getStage() {
+            return stage;
+        }
+
+        public void setStage(Stage stage) {
+            this.stage = stage;
+        }
+
+        public String getModuleName() {
+            return moduleName;
+        }
+
+        public void setModuleName(String moduleName) {
+            this.moduleName = moduleName;
+        }
+
+        public int getFilesTotal() {
+            return filesTotal;
+        }
+
+        public void setFilesTotal(int filesTotal) {
+            this.filesTotal = filesTotal;
+        }
+
+        public int getFilesStored() {
+            return filesStored.get();
+        }
+
+        public void fileStored() {
+            filesStored.incrementAndGet();
+        }
+
+        public Long getVersion() {
+            return version;
+        }
+
+        public String getErrorMessage() {
+            return error == null ? null : error.getMessage();
+        }
+
+        public long getQueuedTime() {
+            return queuedTime;
+        }
+
+        public Long getFinishedTime() {
+            return finishedTime;
+        }
+    }
+}
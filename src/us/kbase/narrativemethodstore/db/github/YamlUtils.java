@@ -1,30 +1,95 @@
 package us.kbase.narrativemethodstore.db.github;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
 import java.util.Map;
 
 import org.yaml.snakeyaml.Yaml;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 
-import us.kbase.common.service.UObject;
+import us.kbase.narrativemethodstore.db.ValueConverter;
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
 
 public class YamlUtils {
-    private static final Yaml yaml = new Yaml();
+    private static final Charset UTF8 = Charset.forName("utf-8");
+    // Yaml instances are not thread-safe and specs are parsed in parallel
+    private static final ThreadLocal<Yaml> yaml = new ThreadLocal<Yaml>() {
+        @Override
+        protected Yaml initialValue() {
+            return new Yaml();
+        }
+    };
 
     public static Map<String,Object> getDocumentAsYamlMap(String document) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < document.length(); i++) {
-            char ch = document.charAt(i);
-            if ((ch < 32 && ch != 10 && ch != 13) || ch >= 127)
-                ch = ' ';
-            sb.append(ch);
+        return asMap(loadDocument(new StringReader(document)));
+    }
+
+    /**
+     * Parses YAML document decoding it directly from UTF-8 bytes. Stream is closed.
+     */
+    public static Map<String,Object> getDocumentAsYamlMap(InputStream is) throws IOException {
+        try {
+            return asMap(loadDocument(new InputStreamReader(is, UTF8)));
+        } finally {
+            is.close();
+        }
+    }
+
+    public static Map<String,Object> getDocumentAsYamlMap(File f) throws IOException {
+        return getDocumentAsYamlMap(new FileInputStream(f));
+    }
+
+    /**
+     * Parses YAML document of any structure. Characters not supported by parser are
+     * replaced by spaces while document is read.
+     */
+    public static Object loadDocument(String document) {
+        return loadDocument(new StringReader(document));
+    }
+
+    public static Object loadDocument(Reader document) {
+        return yaml.get().load(new SanitizingReader(document));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String,Object> asMap(Object document) {
+        return (Map<String, Object>)document;
+    }
+
+    /**
+     * Replaces control and non-ASCII characters (except line breaks) by spaces
+     * in place while reading.
+     */
+    public static class SanitizingReader extends FilterReader {
+        public SanitizingReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int ch = super.read();
+            return ch < 0 ? ch : sanitize((char)ch);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int ret = super.read(cbuf, off, len);
+            for (int i = off; i < off + ret; i++)
+                cbuf[i] = sanitize(cbuf[i]);
+            return ret;
+        }
+
+        private static char sanitize(char ch) {
+            return ((ch < 32 && ch != 10 && ch != 13) || ch >= 127) ? ' ' : ch;
         }
-        document = sb.toString();
-        @SuppressWarnings("unchecked")
-        Map<String,Object> data = (Map<String, Object>) yaml.load(document);
-        return data;
     }
 
     public static <T> T getPropertyNotNull(String source, Map<String,Object> map, String key, 
@@ -40,7 +105,7 @@ public class YamlUtils {
             Class<T> retType) throws NarrativeMethodStoreException {
         Object obj = map.get(key);
         try {
-            return UObject.transformObjectToObject(obj, retType);
+            return ValueConverter.convert(obj, retType);
         } catch (Exception e) {
             throw new NarrativeMethodStoreException("Error reading property [" + key + "] " +
             		"in " + source + ": " + e.getMessage(), e);
@@ -60,7 +125,7 @@ public class YamlUtils {
             TypeReference<T> retType) throws NarrativeMethodStoreException {
         Object obj = map.get(key);
         try {
-            return UObject.transformObjectToObject(obj, retType);
+            return ValueConverter.convert(obj, retType);
         } catch (Exception e) {
             throw new NarrativeMethodStoreException("Error reading property [" + key + "] " +
                     "in " + source + ": " + e.getMessage(), e);
@@ -1,25 +1,42 @@
 package us.kbase.narrativemethodstore.db.mongo;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
+import org.apache.commons.io.IOUtils;
+import org.bson.types.Binary;
 import org.jongo.Jongo;
 import org.jongo.MongoCollection;
 
+import com.mongodb.BasicDBObject;
 import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
 import com.mongodb.MongoException.DuplicateKey;
+import com.mongodb.gridfs.GridFS;
+import com.mongodb.gridfs.GridFSDBFile;
+import com.mongodb.gridfs.GridFSInputFile;
 
 import us.kbase.auth.AuthToken;
 import us.kbase.common.mongo.GetMongoDB;
@@ -39,6 +56,7 @@ import us.kbase.shock.client.exceptions.ShockHttpException;
 public class MongoDynamicRepoDB implements DynamicRepoDB {
     private final DB db;
     private final Jongo jdb;
+    private final GridFS gridFS;
     private final Set<String> globalAdmins;
     private final boolean isReadOnly;
     private final URL shockUrl;
@@ -65,9 +83,24 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
     private static final String FIELD_RF_MODULE_NAME = "module_name";
     private static final String FIELD_RF_FILE_NAME = "file_name";
     private static final String FIELD_RF_LENGTH = "length";
-    private static final String FIELD_RF_MD5 = "md5";
+    private static final String FIELD_RF_SHA256 = "sha256";
     private static final String FIELD_RF_HEX_DATA = "hex_data";
     private static final String FIELD_RF_SHOCK_NODE_ID = "shock_node_id";
+    private static final String FIELD_RF_BIN_DATA = "bin_data";
+    private static final String FIELD_RF_GRIDFS_ID = "gridfs_id";
+    ////////////////////////////////////////////////////////////////////
+    // Content shared by all files with the same SHA-256 (used as _id)
+    private static final String TABLE_REPO_FILE_CONTENT = "repo_file_content";
+    private static final String FIELD_RFC_ID = "_id";
+    private static final String FIELD_RFC_LENGTH = "length";
+    ////////////////////////////////////////////////////////////////////
+    // Markers of finished one-time maintenance tasks (task name used as _id)
+    private static final String TABLE_MAINTENANCE = "maintenance";
+    private static final String FIELD_M_ID = "_id";
+    private static final String FIELD_M_SHOCK_INCLUDED = "shock_included";
+    private static final String MAINTENANCE_FILE_STORAGE_MIGRATION = "file_storage_migration";
+    ////////////////////////////////////////////////////////////////////
+    private static final String GRIDFS_REPO_FILE_DATA = "repo_file_data";
     
     public MongoDynamicRepoDB(String host, String database, String dbUser, String dbPwd,
             List<String> globalAdminUserIds, boolean isReadOnly, URL shockUrl,
@@ -82,6 +115,7 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
                 db = GetMongoDB.getDB(host, database, dbUser, dbPwd, 0, 10);
             }
             jdb = new Jongo(db);
+            gridFS = new GridFS(db, GRIDFS_REPO_FILE_DATA);
             if (!isReadOnly)
                 ensureIndeces();
             globalAdmins = new HashSet<String>(globalAdminUserIds);
@@ -101,8 +135,8 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
                 FIELD_RH_REPO_DATA + ".gitCommitHash"), "{unique:false}");
         MongoCollection repoFiles = jdb.getCollection(TABLE_REPO_FILES);
         repoFiles.ensureIndex(String.format("{%s:1}", FIELD_RF_FILE_ID), "{unique:true}");
-        repoFiles.ensureIndex(String.format("{%s:1,%s:1,%s:1,%s:1}", FIELD_RF_MODULE_NAME, 
-                FIELD_RF_FILE_NAME, FIELD_RF_LENGTH, FIELD_RF_MD5), "{unique:false}");
+        repoFiles.ensureIndex(String.format("{%s:1,%s:1,%s:1}", FIELD_RF_MODULE_NAME, 
+                FIELD_RF_FILE_NAME, FIELD_RF_SHA256), "{unique:false}");
     }
     
     @Override
@@ -369,9 +403,14 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
         return listRepoOwners(repoModuleName).contains(userId);
     }
 
+    @Override
+    public boolean isAdmin(String userId) {
+        return globalAdmins.contains(userId);
+    }
+    
     private void checkAdmin(String userId)
             throws NarrativeMethodStoreException {
-        if (!globalAdmins.contains(userId))
+        if (!isAdmin(userId))
             throw new NarrativeMethodStoreException("User " + userId + 
                     " is not global admin");
     }
@@ -445,7 +484,6 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
         });
     }
     
-    @SuppressWarnings({ "unchecked", "rawtypes" })
     @Override
     public FileId saveFile(String moduleName, FileProvider file) 
             throws NarrativeMethodStoreException {
@@ -454,51 +492,9 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
         String fileName = file.getName();
         long length = file.length();
         InputStream is = file.openStream();
-        String md5 = MongoUtils.getMD5(is);
-        try {
-            is.close();
-        } catch (IOException ex) {
-            throw new NarrativeMethodStoreException(ex);
-        }
-        MongoCollection files = jdb.getCollection(TABLE_REPO_FILES);
-        Iterator<Map> it = files.find(String.format("{%s:#,%s:#,%s:#,%s:#}", 
-                FIELD_RF_MODULE_NAME, FIELD_RF_FILE_NAME, FIELD_RF_LENGTH, FIELD_RF_MD5), 
-                moduleName, fileName, length, md5).as(Map.class).iterator();
-        while (it.hasNext()) {
-            Map<String, Object> obj = it.next();
-            is = file.openStream();
-            try {
-                OutputComparatorStream ocs = new OutputComparatorStream(is);
-                loadFile(obj, ocs);
-                if (!ocs.isDifferent()) {
-                    String fileId = (String)obj.get(FIELD_RF_FILE_ID);
-                    //System.out.println("File was found: " + fileName + ", " + length + ", " + md5 + " -> " + fileId);
-                    return new FileId(fileId);
-                }
-            } finally {
-                try {
-                    is.close();
-                } catch (IOException ex) {
-                    throw new NarrativeMethodStoreException(ex);
-                }
-            }
-        }
-        // We couldn't find file which is equal to save request. 
-        // Let's store original copy of it.
-        String hexData = null;
-        String shockNodeId = null;
-        is = file.openStream();
+        String sha256;
         try {
-            if (length <= MAX_MONGO_FILE_LENGTH || shockUrl == null) {
-                hexData = MongoUtils.streamToHex(is);
-            } else {
-                try {
-                    BasicShockClient cl = new BasicShockClient(shockUrl, serviceToken);
-                    shockNodeId = cl.addNode(is, fileName, "JSON").getId().getId();
-                } catch (Exception ex) {
-                    throw new NarrativeMethodStoreException(ex);
-                }
-            }
+            sha256 = saveContentOnce(fileName, length, is);
         } finally {
             try {
                 is.close();
@@ -506,6 +502,13 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
                 throw new NarrativeMethodStoreException(ex);
             }
         }
+        DBCollection filesRaw = db.getCollection(TABLE_REPO_FILES);
+        DBObject found = filesRaw.findOne(new BasicDBObject(FIELD_RF_MODULE_NAME, moduleName)
+                .append(FIELD_RF_FILE_NAME, fileName).append(FIELD_RF_SHA256, sha256),
+                new BasicDBObject(FIELD_RF_FILE_ID, 1));
+        if (found != null)
+            return new FileId((String)found.get(FIELD_RF_FILE_ID));
+        MongoCollection files = jdb.getCollection(TABLE_REPO_FILES);
         long fileIdNum = System.currentTimeMillis();
         while (true) {
             try {
@@ -516,55 +519,259 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
             }
         }
         String fileId = String.valueOf(fileIdNum);
-        files.update(String.format("{%s:#}", FIELD_RF_FILE_ID), 
-                fileId).with(String.format("{%s:#,%s:#,%s:#,%s:#,%s:#,%s:#,%s:#}", 
-                        FIELD_RF_FILE_ID, FIELD_RF_MODULE_NAME, FIELD_RF_FILE_NAME, 
-                        FIELD_RF_LENGTH, FIELD_RF_MD5, FIELD_RF_HEX_DATA, 
-                        FIELD_RF_SHOCK_NODE_ID), fileId, moduleName, fileName, length, 
-                        md5, hexData, shockNodeId);
-        //System.out.println("File was saved: " + fileName + ", " + length + ", " + md5 + " -> " + fileId);
+        filesRaw.update(new BasicDBObject(FIELD_RF_FILE_ID, fileId), 
+                new BasicDBObject(FIELD_RF_FILE_ID, fileId)
+                .append(FIELD_RF_MODULE_NAME, moduleName).append(FIELD_RF_FILE_NAME, fileName)
+                .append(FIELD_RF_LENGTH, length).append(FIELD_RF_SHA256, sha256));
         return new FileId(fileId);
     }
     
+    /**
+     * Reads input stream once computing SHA-256 on the fly, data is kept in memory 
+     * (small files) or spooled into temporary file (large ones) and is stored only 
+     * if there is no content with the same hash yet. Returns SHA-256 of content.
+     */
+    private String saveContentOnce(String fileName, long length, InputStream is)
+            throws NarrativeMethodStoreException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new NarrativeMethodStoreException(ex);
+        }
+        DigestInputStream dis = new DigestInputStream(is, digest);
+        byte[] data = null;
+        File tempFile = null;
+        try {
+            if (length <= MAX_MONGO_FILE_LENGTH) {
+                data = IOUtils.toByteArray(dis);
+            } else {
+                tempFile = File.createTempFile("file_upload_", ".tmp");
+                OutputStream os = new FileOutputStream(tempFile);
+                try {
+                    IOUtils.copyLarge(dis, os);
+                } finally {
+                    os.close();
+                }
+            }
+            String sha256 = MongoUtils.byteToHex(digest.digest());
+            // Content could be already stored for other file name or module.
+            if (!isContentStored(sha256)) {
+                InputStream content = data != null ? new ByteArrayInputStream(data) :
+                    new FileInputStream(tempFile);
+                try {
+                    saveContent(sha256, fileName, length, content);
+                } finally {
+                    content.close();
+                }
+            }
+            return sha256;
+        } catch (IOException ex) {
+            throw new NarrativeMethodStoreException(ex);
+        } finally {
+            if (tempFile != null)
+                tempFile.delete();
+        }
+    }
+    
+    private boolean isContentStored(String sha256) throws NarrativeMethodStoreException {
+        try {
+            return db.getCollection(TABLE_REPO_FILE_CONTENT).findOne(
+                    new BasicDBObject(FIELD_RFC_ID, sha256), 
+                    new BasicDBObject(FIELD_RFC_ID, 1)) != null;
+        } catch (MongoException ex) {
+            throw new NarrativeMethodStoreException(ex);
+        }
+    }
+    
+    /**
+     * Stores content under its SHA-256 unless concurrent save has already done it.
+     */
+    private void saveContent(String sha256, String fileName, long length, InputStream is)
+            throws NarrativeMethodStoreException {
+        BasicDBObject content = storeContent(fileName, length, is);
+        content.append(FIELD_RFC_ID, sha256).append(FIELD_RFC_LENGTH, length);
+        try {
+            db.getCollection(TABLE_REPO_FILE_CONTENT).insert(content);
+        } catch (DuplicateKey ex) {
+            Object gridFsId = content.get(FIELD_RF_GRIDFS_ID);
+            if (gridFsId != null)
+                gridFS.remove(new BasicDBObject("_id", gridFsId));
+        } catch (MongoException ex) {
+            throw new NarrativeMethodStoreException(ex);
+        }
+    }
+    
+    /**
+     * Stores file content as BSON binary (small files) or in GridFS (large ones) and
+     * returns fields which should be put into content document.
+     */
+    private BasicDBObject storeContent(String fileName, long length, InputStream is) 
+            throws NarrativeMethodStoreException {
+        try {
+            if (length <= MAX_MONGO_FILE_LENGTH) {
+                return new BasicDBObject(FIELD_RF_BIN_DATA, IOUtils.toByteArray(is));
+            } else {
+                GridFSInputFile gfsFile = gridFS.createFile(is, fileName, true);
+                gfsFile.save();
+                return new BasicDBObject(FIELD_RF_GRIDFS_ID, gfsFile.getId());
+            }
+        } catch (IOException ex) {
+            throw new NarrativeMethodStoreException(ex);
+        } catch (MongoException ex) {
+            throw new NarrativeMethodStoreException(ex);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> toMap(DBObject obj) {
+        return obj == null ? null : (Map<String, Object>)obj.toMap();
+    }
+    
     private Map<String, Object> getFileObject(FileId fileId) 
             throws NarrativeMethodStoreException {
-        @SuppressWarnings("unchecked")
-        Map<String, Object> obj = jdb.getCollection(TABLE_REPO_FILES)
-                .findOne(String.format("{%s:#}", 
-                FIELD_RF_FILE_ID), fileId.getId()).as(Map.class);
+        return getFileObject(fileId, true);
+    }
+    
+    private Map<String, Object> getFileObject(FileId fileId, boolean withContent) 
+            throws NarrativeMethodStoreException {
+        Map<String, Object> obj = toMap(db.getCollection(TABLE_REPO_FILES).findOne(
+                new BasicDBObject(FIELD_RF_FILE_ID, fileId.getId()), 
+                withContent ? null : getFileMetadataProjection()));
         if (obj == null)
             throw new NarrativeMethodStoreException("File with id=" + fileId.getId() + 
                     " is not found");
         return obj;
     }
     
+    private static DBObject getFileMetadataProjection() {
+        return new BasicDBObject(FIELD_RF_FILE_ID, 1).append(FIELD_RF_FILE_NAME, 1)
+                .append(FIELD_RF_LENGTH, 1);
+    }
+    
     @Override
     public FilePointer loadFile(FileId fileId)
             throws NarrativeMethodStoreException {
-        Map<String, Object> obj = getFileObject(fileId);
+        Map<String, Object> obj = getFileObject(fileId, false);
         String fileName = (String)obj.get(FIELD_RF_FILE_NAME);
         long length = (Long)obj.get(FIELD_RF_LENGTH);
         return new DbFilePointer(fileId, fileName, length);
     }
+    
+    @Override
+    public List<FilePointer> loadFiles(List<FileId> fileIds, boolean withContent)
+            throws NarrativeMethodStoreException {
+        List<String> ids = new ArrayList<String>();
+        for (FileId fileId : fileIds)
+            ids.add(fileId.getId());
+        DBCursor cur = db.getCollection(TABLE_REPO_FILES).find(
+                new BasicDBObject(FIELD_RF_FILE_ID, new BasicDBObject("$in", ids)),
+                withContent ? null : getFileMetadataProjection());
+        Map<String, Map<String, Object>> idToObj = new HashMap<String, Map<String, Object>>();
+        try {
+            while (cur.hasNext()) {
+                Map<String, Object> obj = toMap(cur.next());
+                idToObj.put((String)obj.get(FIELD_RF_FILE_ID), obj);
+            }
+        } finally {
+            cur.close();
+        }
+        if (withContent)
+            attachContent(idToObj.values());
+        List<FilePointer> ret = new ArrayList<FilePointer>();
+        for (FileId fileId : fileIds) {
+            Map<String, Object> obj = idToObj.get(fileId.getId());
+            if (obj == null)
+                throw new NarrativeMethodStoreException("File with id=" + fileId.getId() + 
+                        " is not found");
+            String fileName = (String)obj.get(FIELD_RF_FILE_NAME);
+            long length = (Long)obj.get(FIELD_RF_LENGTH);
+            ret.add(new DbFilePointer(fileId, fileName, length, withContent ? obj : null));
+        }
+        return ret;
+    }
 
+    /**
+     * Replaces file documents referring to shared content by content documents
+     * loaded in one request.
+     */
+    private void attachContent(Collection<Map<String, Object>> fileObjects) 
+            throws NarrativeMethodStoreException {
+        Set<String> hashes = new HashSet<String>();
+        for (Map<String, Object> obj : fileObjects)
+            if (obj.get(FIELD_RF_SHA256) != null)
+                hashes.add((String)obj.get(FIELD_RF_SHA256));
+        if (hashes.isEmpty())
+            return;
+        Map<String, Map<String, Object>> hashToContent = new HashMap<String, Map<String, Object>>();
+        DBCursor cur = db.getCollection(TABLE_REPO_FILE_CONTENT).find(
+                new BasicDBObject(FIELD_RFC_ID, new BasicDBObject("$in", hashes)));
+        try {
+            while (cur.hasNext()) {
+                Map<String, Object> content = toMap(cur.next());
+                hashToContent.put((String)content.get(FIELD_RFC_ID), content);
+            }
+        } finally {
+            cur.close();
+        }
+        for (Map<String, Object> obj : fileObjects) {
+            Map<String, Object> content = hashToContent.get(obj.get(FIELD_RF_SHA256));
+            if (content != null) {
+                obj.remove(FIELD_RF_SHA256);
+                obj.putAll(content);
+            }
+        }
+    }
+    
+    private Map<String, Object> getContentObject(String sha256, Object fileId) 
+            throws NarrativeMethodStoreException {
+        Map<String, Object> ret = toMap(db.getCollection(TABLE_REPO_FILE_CONTENT).findOne(
+                new BasicDBObject(FIELD_RFC_ID, sha256)));
+        if (ret == null)
+            throw new NarrativeMethodStoreException("Content with sha256=" + sha256 + 
+                    " is not found for file id=" + fileId);
+        return ret;
+    }
+    
     private void loadFile(FileId fileId, OutputStream target) 
             throws NarrativeMethodStoreException {
         loadFile(getFileObject(fileId), target);
     }
     
+    /**
+     * Writes file content into target stream. Content may be shared by SHA-256 or
+     * stored in file document in any of formats: BSON binary, GridFS, hex string 
+     * or Shock node (older formats).
+     */
     private void loadFile(Map<String, Object> obj, OutputStream target) 
             throws NarrativeMethodStoreException {
+        String sha256 = (String)obj.get(FIELD_RF_SHA256);
+        if (sha256 != null)
+            obj = getContentObject(sha256, obj.get(FIELD_RF_FILE_ID));
         try {
+            Object binData = obj.get(FIELD_RF_BIN_DATA);
+            Object gridFsId = obj.get(FIELD_RF_GRIDFS_ID);
             String hexData = (String)obj.get(FIELD_RF_HEX_DATA);
-            if (hexData == null) {
+            if (binData != null) {
+                target.write(binData instanceof Binary ? ((Binary)binData).getData() : 
+                    (byte[])binData);
+            } else if (gridFsId != null) {
+                GridFSDBFile gfsFile = gridFS.findOne(new BasicDBObject("_id", gridFsId));
+                if (gfsFile == null)
+                    throw new NarrativeMethodStoreException("GridFS file with id=" + gridFsId + 
+                            " is not found for file id=" + obj.get(FIELD_RF_FILE_ID));
+                gfsFile.writeTo(target);
+            } else if (hexData != null) {
+                target.write(MongoUtils.hexToBytes(hexData));
+            } else {
                 String shockNodeId = (String)obj.get(FIELD_RF_SHOCK_NODE_ID);
                 BasicShockClient cl = new BasicShockClient(shockUrl, serviceToken);
                 cl.getFile(new ShockNodeId(shockNodeId), target);
-            } else {
-                target.write(MongoUtils.hexToBytes(hexData));
             }
         } catch (IOException ex) {
             throw new NarrativeMethodStoreException(ex);
+        } catch (MongoException ex) {
+            throw new NarrativeMethodStoreException(ex);
         } catch (InvalidShockUrlException ex) {
             throw new NarrativeMethodStoreException(ex);
         } catch (ShockHttpException ex) {
@@ -574,15 +781,137 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
         }
     }
     
+    /**
+     * Starts background thread moving content of files stored in older formats (hex 
+     * strings, Shock nodes or inside file document) into shared content storage. 
+     * Readers support all formats so service can work while migration is in progress.
+     */
+    public void startFileStorageMigration() {
+        if (isReadOnly)
+            return;
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    migrateFileStorage();
+                } catch (Throwable ex) {
+                    System.err.println("[" + new Date() + "] NarrativeMethodStore.MongoDynamicRepoDB: " +
+                    		"error migrating file storage: " + ex.getMessage());
+                }
+            }
+        }, "NarrativeMethodStore-file-migration");
+        t.setDaemon(true);
+        t.start();
+    }
+    
+    /**
+     * Moves content of files stored in older formats into shared content storage 
+     * keyed by SHA-256, returns number of converted files. Files stored in Shock are 
+     * converted only if Shock URL is configured. Once all files are converted the
+     * fact is recorded in maintenance collection so that later calls don't scan 
+     * files again.
+     */
+    public int migrateFileStorage() throws NarrativeMethodStoreException {
+        if (isReadOnly)
+            throwChangeOperation();
+        DBCollection maintenance = db.getCollection(TABLE_MAINTENANCE);
+        DBObject marker = maintenance.findOne(new BasicDBObject(FIELD_M_ID, 
+                MAINTENANCE_FILE_STORAGE_MIGRATION));
+        if (marker != null && (shockUrl == null || 
+                Boolean.TRUE.equals(marker.get(FIELD_M_SHOCK_INCLUDED))))
+            return 0;
+        DBCollection files = db.getCollection(TABLE_REPO_FILES);
+        List<DBObject> oldFormats = new ArrayList<DBObject>();
+        oldFormats.add(new BasicDBObject(FIELD_RF_HEX_DATA, new BasicDBObject("$ne", null)));
+        oldFormats.add(new BasicDBObject(FIELD_RF_BIN_DATA, new BasicDBObject("$ne", null)));
+        oldFormats.add(new BasicDBObject(FIELD_RF_GRIDFS_ID, new BasicDBObject("$ne", null)));
+        if (shockUrl != null)
+            oldFormats.add(new BasicDBObject(FIELD_RF_SHOCK_NODE_ID, new BasicDBObject("$ne", null)));
+        List<String> fileIds = new ArrayList<String>();
+        DBCursor cur = files.find(new BasicDBObject("$or", oldFormats), 
+                new BasicDBObject(FIELD_RF_FILE_ID, 1));
+        try {
+            while (cur.hasNext())
+                fileIds.add((String)cur.next().get(FIELD_RF_FILE_ID));
+        } finally {
+            cur.close();
+        }
+        if (fileIds.isEmpty()) {
+            markFileStorageMigrated(maintenance);
+            return 0;
+        }
+        System.out.println("[" + new Date() + "] NarrativeMethodStore.MongoDynamicRepoDB: " +
+        		"migrating " + fileIds.size() + " files into shared content storage");
+        int ret = 0;
+        for (String fileId : fileIds) {
+            File tempFile = null;
+            try {
+                Map<String, Object> obj = getFileObject(new FileId(fileId));
+                String fileName = (String)obj.get(FIELD_RF_FILE_NAME);
+                long length = (Long)obj.get(FIELD_RF_LENGTH);
+                tempFile = File.createTempFile("file_migration_", ".tmp");
+                OutputStream os = new FileOutputStream(tempFile);
+                try {
+                    loadFile(obj, os);
+                } finally {
+                    os.close();
+                }
+                String sha256;
+                InputStream is = new FileInputStream(tempFile);
+                try {
+                    sha256 = saveContentOnce(fileName, length, is);
+                } finally {
+                    is.close();
+                }
+                files.update(new BasicDBObject(FIELD_RF_FILE_ID, fileId), 
+                        new BasicDBObject("$set", new BasicDBObject(FIELD_RF_SHA256, sha256))
+                        .append("$unset", new BasicDBObject(FIELD_RF_HEX_DATA, "")
+                        .append(FIELD_RF_SHOCK_NODE_ID, "").append(FIELD_RF_BIN_DATA, "")
+                        .append(FIELD_RF_GRIDFS_ID, "")));
+                Object oldGridFsId = obj.get(FIELD_RF_GRIDFS_ID);
+                if (oldGridFsId != null)
+                    gridFS.remove(new BasicDBObject("_id", oldGridFsId));
+                ret++;
+            } catch (Exception ex) {
+                System.err.println("[" + new Date() + "] NarrativeMethodStore.MongoDynamicRepoDB: " +
+                		"error migrating file id=" + fileId + ": " + ex.getMessage());
+            } finally {
+                if (tempFile != null)
+                    tempFile.delete();
+            }
+        }
+        System.out.println("[" + new Date() + "] NarrativeMethodStore.MongoDynamicRepoDB: " +
+        		ret + " files were migrated into shared content storage");
+        if (ret == fileIds.size())
+            markFileStorageMigrated(maintenance);
+        return ret;
+    }
+    
+    private void markFileStorageMigrated(DBCollection maintenance) {
+        maintenance.save(new BasicDBObject(FIELD_M_ID, MAINTENANCE_FILE_STORAGE_MIGRATION)
+                .append(FIELD_M_SHOCK_INCLUDED, shockUrl != null));
+    }
+    
     public class DbFilePointer implements FilePointer {
         private final FileId fileId;
         private final String fileName;
         private final long length;
+        private final Map<String, Object> fileObject;
         
         public DbFilePointer(FileId fileId, String fileName, long length) {
+            this(fileId, fileName, length, null);
+        }
+        
+        /**
+         * Pointer with already loaded file object which doesn't need to be
+         * requested again from DB when content is streamed.
+         */
+        public DbFilePointer(FileId fileId, String fileName, long length,
+                Map<String, Object> fileObject) {
             this.fileId = fileId;
             this.fileName = fileName;
             this.length = length;
+            this.fileObject = fileObject;
         }
         
         @Override
@@ -608,7 +937,11 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
         @Override
         public void saveToStream(OutputStream os)
                 throws NarrativeMethodStoreException {
-            loadFile(fileId, os);
+            if (fileObject != null) {
+                loadFile(fileObject, os);
+            } else {
+                loadFile(fileId, os);
+            }
         }
     }
     
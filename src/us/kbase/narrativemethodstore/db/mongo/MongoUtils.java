@@ -1,9 +1,6 @@
 package us.kbase.narrativemethodstore.db.mongo;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.nio.charset.Charset;
-import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -12,7 +9,7 @@ import java.util.regex.Pattern;
 
 import org.jongo.MongoCollection;
 
-import us.kbase.common.service.UObject;
+import us.kbase.narrativemethodstore.db.ValueConverter;
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
 
 import com.google.common.collect.Lists;
@@ -29,9 +26,7 @@ public class MongoUtils {
         List<T> ret = new ArrayList<T>();
         for (Map<?,?> item : data) {
             Object value = item.get(selectField);
-            if (value != null && !type.isInstance(value))
-                value = UObject.transformObjectToObject(value, type);
-            ret.add((T)value);
+            ret.add(ValueConverter.convert(value, type));
         }
         return ret;
     }
@@ -51,9 +46,7 @@ public class MongoUtils {
             if (value == null)
                 throw new NullPointerException("Value is not defined for selected " +
                         "field: " + valueSelectField);
-            if (!valueType.isInstance(value))
-                value = UObject.transformObjectToObject(value, valueType);
-            ret.put((KT)key, (VT)value);
+            ret.put((KT)key, ValueConverter.convert(value, valueType));
         }
         return ret;
     }
@@ -81,52 +74,19 @@ public class MongoUtils {
         return hex.toString();
     }
 
-    public static String streamToHex(InputStream is) throws NarrativeMethodStoreException {
-        byte[] buffer = new byte[10000];
-        final StringBuilder hex = new StringBuilder();
-        try {
-            while (true) {
-                int len = is.read(buffer);
-                if (len < 0)
-                    break;
-                for (int i = 0; i < len; i++) {
-                    byte b = buffer[i];
-                    hex.append(HEXES.charAt((b & 0xF0) >> 4)).append(HEXES.charAt((b & 0x0F)));
-                }
-            }
-        } catch (IOException ex) {
-            throw new NarrativeMethodStoreException(ex);
-        }
-        return hex.toString();
-    }
-
     public static String hexToString(String hex) {
         return new String(hexToBytes(hex), Charset.forName("utf-8"));
     }
     
     public static byte[] hexToBytes(String hex) {
-        hex = hex.toLowerCase();
         byte[] ret = new byte[hex.length() / 2];
-        for (int i = 0; i < ret.length; i++)
-            ret[i] = (byte)Integer.parseInt(hex.substring(i * 2, (i + 1) * 2), 16);
-        return ret;
-    }
-    
-    public static String getMD5(InputStream is) throws NarrativeMethodStoreException {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("MD5");
-            byte[] buffer = new byte[10000];
-            while (true) {
-                int len = is.read(buffer);
-                if (len < 0)
-                    break;
-                if (len == 0)
-                    continue;
-                digest.update(buffer, 0, len);
-            }
-            return byteToHex(digest.digest());
-        } catch (Exception ex) {
-            throw new NarrativeMethodStoreException(ex);
+        for (int i = 0; i < ret.length; i++) {
+            int hi = Character.digit(hex.charAt(i * 2), 16);
+            int lo = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (hi < 0 || lo < 0)
+                throw new IllegalArgumentException("Wrong hex character at position " + (i * 2));
+            ret[i] = (byte)((hi << 4) | lo);
         }
+        return ret;
     }
 }
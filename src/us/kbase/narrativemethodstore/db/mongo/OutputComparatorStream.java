@@ -6,7 +6,8 @@ import java.io.OutputStream;
 
 /**
  * This class emulates output stream in order to compare data written into 
- * this stream with data provided by separate input stream.
+ * this stream with data provided by separate input stream. Stored files are 
+ * deduplicated by SHA-256 now, so it's used for checking loaded content only.
  * @author rsutormin
  */
 public class OutputComparatorStream extends OutputStream {
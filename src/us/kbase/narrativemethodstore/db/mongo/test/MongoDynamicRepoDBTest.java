@@ -1,5 +1,6 @@
 package us.kbase.narrativemethodstore.db.mongo.test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -12,6 +13,7 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import junit.framework.Assert;
 
@@ -25,7 +27,9 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.mongodb.BasicDBObject;
 import com.mongodb.DB;
+import com.mongodb.DBObject;
 
 import us.kbase.auth.AuthService;
 import us.kbase.auth.AuthToken;
@@ -35,11 +39,13 @@ import us.kbase.narrativemethodstore.MethodBriefInfo;
 import us.kbase.narrativemethodstore.MethodParameter;
 import us.kbase.narrativemethodstore.MethodSpec;
 import us.kbase.narrativemethodstore.TextOptions;
+import us.kbase.narrativemethodstore.db.FileId;
 import us.kbase.narrativemethodstore.db.FileLookup;
 import us.kbase.narrativemethodstore.db.FilePointer;
 import us.kbase.narrativemethodstore.db.JsonRepoProvider;
 import us.kbase.narrativemethodstore.db.NarrativeMethodData;
 import us.kbase.narrativemethodstore.db.RepoProvider;
+import us.kbase.narrativemethodstore.db.DynamicRepoDB.FileProvider;
 import us.kbase.narrativemethodstore.db.DynamicRepoDB.RepoState;
 import us.kbase.narrativemethodstore.db.docker.DockerImageBuilder;
 import us.kbase.narrativemethodstore.db.github.FileRepoProvider;
@@ -47,6 +53,7 @@ import us.kbase.narrativemethodstore.db.github.GitHubRepoProvider;
 import us.kbase.narrativemethodstore.db.github.PySrvRepoPreparator;
 import us.kbase.narrativemethodstore.db.github.YamlUtils;
 import us.kbase.narrativemethodstore.db.mongo.MongoDynamicRepoDB;
+import us.kbase.narrativemethodstore.db.mongo.MongoUtils;
 import us.kbase.narrativemethodstore.db.mongo.OutputComparatorStream;
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
 import us.kbase.narrativemethodstore.util.FileUtils;
@@ -256,6 +263,132 @@ public class MongoDynamicRepoDBTest {
         Assert.assertEquals("genomeA", parser.getMethodSpec().getParameters().get(0).getId());
     }
     
+    @Test
+    public void fileStorageMigrationTest() throws Exception {
+        String host = "localhost:" + dbHelper.getMongoPort();
+        MongoDynamicRepoDB db = new MongoDynamicRepoDB(host, dbName, null, null, 
+                Arrays.asList("admin"), false, null, null);
+        String text = "{\"text\": \"Some UTF-8 text: \u00e9\"}";
+        File tempFile = File.createTempFile("file_storage_", ".json");
+        try {
+            FileOutputStream fos = new FileOutputStream(tempFile);
+            fos.write(text.getBytes(Charset.forName("utf-8")));
+            fos.close();
+            FileId newFormatId = db.saveFile("Module", tempFile);
+            Assert.assertEquals(text, asText(db.loadFile(newFormatId)));
+            // Emulate file stored in older hex format
+            DB mongo = GetMongoDB.getDB(host, dbName, 0, 10);
+            mongo.getCollection("repo_files").insert(new BasicDBObject("file_id", "1")
+                    .append("module_name", "Module").append("file_name", "old.json")
+                    .append("length", tempFile.length()).append("md5", "-")
+                    .append("hex_data", MongoUtils.stringToHex(text)));
+            Assert.assertEquals(text, asText(db.loadFile(new FileId("1"))));
+            Assert.assertEquals(1, db.migrateFileStorage());
+            Assert.assertEquals(0, db.migrateFileStorage());
+            Assert.assertEquals(1, mongo.getCollection("maintenance").count());
+            // Finished migration is not repeated, so files in old format are not scanned
+            mongo.getCollection("repo_files").insert(new BasicDBObject("file_id", "2")
+                    .append("module_name", "Module").append("file_name", "old2.json")
+                    .append("length", tempFile.length()).append("md5", "-")
+                    .append("hex_data", MongoUtils.stringToHex(text)));
+            Assert.assertEquals(0, db.migrateFileStorage());
+            Assert.assertNotNull(mongo.getCollection("repo_files").findOne(
+                    new BasicDBObject("file_id", "2")).get("hex_data"));
+            DBObject migrated = mongo.getCollection("repo_files").findOne(
+                    new BasicDBObject("file_id", "1"));
+            Assert.assertNull(migrated.get("hex_data"));
+            Assert.assertNotNull(migrated.get("sha256"));
+            Assert.assertEquals(text, asText(db.loadFile(new FileId("1"))));
+            // Same content is stored once and shared across modules
+            Assert.assertEquals(newFormatId.getId(), db.saveFile("Module", tempFile).getId());
+            FileId otherModuleId = db.saveFile("Module2", tempFile);
+            Assert.assertFalse(newFormatId.getId().equals(otherModuleId.getId()));
+            Assert.assertEquals(text, asText(db.loadFile(otherModuleId)));
+            Assert.assertEquals(1, mongo.getCollection("repo_file_content").count());
+            List<FilePointer> fps = db.loadFiles(Arrays.asList(new FileId("1"), newFormatId), true);
+            Assert.assertEquals("old.json", fps.get(0).getName());
+            Assert.assertEquals(text, asText(fps.get(1)));
+        } finally {
+            tempFile.delete();
+        }
+    }
+    
+    @Test
+    public void saveContentOnceTest() throws Exception {
+        String host = "localhost:" + dbHelper.getMongoPort();
+        MongoDynamicRepoDB db = new MongoDynamicRepoDB(host, dbName, null, null, 
+                Arrays.asList("admin"), false, null, null);
+        DB mongo = GetMongoDB.getDB(host, dbName, 0, 10);
+        // Same small content saved twice under different names is stored once
+        byte[] small = "{\"small\": true}".getBytes(Charset.forName("utf-8"));
+        FileId smallId1 = db.saveFile("Module", new OneTimeFileProvider("a.json", small));
+        FileId smallId2 = db.saveFile("Module", new OneTimeFileProvider("b.json", small));
+        Assert.assertFalse(smallId1.getId().equals(smallId2.getId()));
+        Assert.assertEquals(1, mongo.getCollection("repo_file_content").count());
+        Assert.assertEquals("{\"small\": true}", asText(db.loadFile(smallId2)));
+        // Content above in-memory threshold is spooled into temp file while its 
+        // hash is computed and is put into GridFS once
+        byte[] large = new byte[(int)MongoDynamicRepoDB.MAX_MONGO_FILE_LENGTH + 12345];
+        new Random(1234).nextBytes(large);
+        File largeFile = File.createTempFile("file_storage_", ".bin");
+        File loadedFile = File.createTempFile("file_storage_", ".bin");
+        try {
+            FileOutputStream fos = new FileOutputStream(largeFile);
+            fos.write(large);
+            fos.close();
+            FileId largeId1 = db.saveFile("Module", new OneTimeFileProvider("large1.bin", large));
+            FileId largeId2 = db.saveFile("Module2", new OneTimeFileProvider("large2.bin", large));
+            Assert.assertFalse(largeId1.getId().equals(largeId2.getId()));
+            Assert.assertEquals(2, mongo.getCollection("repo_file_content").count());
+            Assert.assertEquals(1, mongo.getCollection("repo_file_data.files").count());
+            DBObject content = mongo.getCollection("repo_file_content").findOne(
+                    new BasicDBObject("gridfs_id", new BasicDBObject("$exists", true)));
+            Assert.assertNotNull(content);
+            Assert.assertNull(content.get("bin_data"));
+            for (FileId fileId : Arrays.asList(largeId1, largeId2)) {
+                OutputStream os = new FileOutputStream(loadedFile);
+                db.loadFile(fileId).saveToStream(os);
+                os.close();
+                Assert.assertFalse(diffFiles(largeFile, loadedFile, 10000));
+            }
+        } finally {
+            largeFile.delete();
+            loadedFile.delete();
+        }
+    }
+    
+    /**
+     * Fails if content is requested more than once, so the test checks that file
+     * data is read in one pass.
+     */
+    private static class OneTimeFileProvider implements FileProvider {
+        private final String name;
+        private final byte[] data;
+        private boolean opened = false;
+        
+        OneTimeFileProvider(String name, byte[] data) {
+            this.name = name;
+            this.data = data;
+        }
+        
+        @Override
+        public String getName() {
+            return name;
+        }
+        
+        @Override
+        public long length() {
+            return data.length;
+        }
+        
+        @Override
+        public InputStream openStream() {
+            Assert.assertFalse("Stream of " + name + " is opened twice", opened);
+            opened = true;
+            return new ByteArrayInputStream(data);
+        }
+    }
+    
     private static String asText(FilePointer fp) throws NarrativeMethodStoreException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         fp.saveToStream(baos);
@@ -0,0 +1,82 @@
+package us.kbase.narrativemethodstore.db.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import us.kbase.narrativemethodstore.db.FileContentCache;
+import us.kbase.narrativemethodstore.db.FileId;
+import us.kbase.narrativemethodstore.db.FilePointer;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+
+public class FileContentCacheTest {
+
+    @Test
+    public void cacheTest() throws Exception {
+        for (boolean offHeap : new boolean[] {false, true}) {
+            FileContentCache cache = new FileContentCache(16 * 1000, offHeap);
+            CountingPointer small = new CountingPointer("1", "icon data");
+            CountingPointer large = new CountingPointer("2", new String(new char[2000]));
+            for (int i = 0; i < 3; i++) {
+                Assert.assertEquals("icon data", save(cache, small));
+                Assert.assertEquals(2000, save(cache, large).length());
+            }
+            Assert.assertEquals(1, small.loads);
+            Assert.assertEquals(3, large.loads);
+            Assert.assertEquals(1, cache.size());
+        }
+    }
+
+    private static String save(FileContentCache cache, FilePointer fp) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        cache.saveToStream(fp, baos);
+        return new String(baos.toByteArray(), Charset.forName("utf-8"));
+    }
+
+    private static class CountingPointer implements FilePointer {
+        private final String fileId;
+        private final byte[] data;
+        int loads = 0;
+
+        CountingPointer(String fileId, String text) {
+            this.fileId = fileId;
+            this.data = text.getBytes(Charset.forName("utf-8"));
+        }
+
+        @Override
+        public File getFile() {
+            return null;
+        }
+
+        @Override
+        public FileId getFileId() {
+            return new FileId(fileId);
+        }
+
+        @Override
+        public String getName() {
+            return "file" + fileId;
+        }
+
+        @Override
+        public long length() {
+            return data.length;
+        }
+
+        @Override
+        public void saveToStream(OutputStream os) throws NarrativeMethodStoreException {
+            loads++;
+            try {
+                os.write(data);
+            } catch (IOException ex) {
+                throw new NarrativeMethodStoreException(ex);
+            }
+        }
+    }
+}
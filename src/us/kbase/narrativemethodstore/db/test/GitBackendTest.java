@@ -0,0 +1,147 @@
+package us.kbase.narrativemethodstore.db.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import us.kbase.narrativemethodstore.db.github.FileRepoProvider;
+import us.kbase.narrativemethodstore.db.github.GitBackend;
+import us.kbase.narrativemethodstore.db.github.GitHubRepoProvider;
+import us.kbase.narrativemethodstore.db.github.GitUtils;
+import us.kbase.narrativemethodstore.db.github.ProcessGitBackend;
+
+public class GitBackendTest {
+
+    @Test
+    public void refsTest() throws Exception {
+        File rootDir = File.createTempFile("git_backend_", ".test");
+        rootDir.delete();
+        rootDir.mkdirs();
+        try {
+            File origin = new File(rootDir, "origin");
+            File local = new File(rootDir, "local");
+            URL url = origin.toURI().toURL();
+            origin.mkdirs();
+            git("git init", origin);
+            git("git checkout -b dev", origin);
+            String hash1 = commit(origin, "v1");
+            git("git clone --branch dev " + origin.getAbsolutePath() + " " +
+                    local.getAbsolutePath(), rootDir);
+            GitBackend backend = new ProcessGitBackend(url);
+            Assert.assertEquals(hash1, backend.getHeadCommitHash(local));
+            Assert.assertNull(backend.getFetchHeadCommitHash(local));
+            // refs are moved into packed-refs file
+            git("git pack-refs --all", local);
+            Assert.assertEquals(hash1, backend.getHeadCommitHash(local));
+            String hash2 = commit(origin, "v2");
+            backend.gitFetch(local, "dev");
+            Assert.assertEquals(hash2, backend.getFetchHeadCommitHash(local));
+            Assert.assertEquals(hash1, backend.getHeadCommitHash(local));
+            backend.gitMergeFetchHead(local);
+            Assert.assertEquals(hash2, backend.getHeadCommitHash(local));
+            Assert.assertEquals("[spec.json]", backend.getChangedPaths(local, hash1, hash2).toString());
+            Assert.assertTrue(backend.getCommitInfo(local).contains(hash2));
+        } finally {
+            FileUtils.deleteQuietly(rootDir);
+        }
+    }
+
+    @Test
+    public void sparseCheckoutTest() throws Exception {
+        File rootDir = File.createTempFile("git_backend_", ".test");
+        rootDir.delete();
+        rootDir.mkdirs();
+        try {
+            File origin = new File(rootDir, "origin");
+            origin.mkdirs();
+            git("git init", origin);
+            new File(origin, "ui").mkdirs();
+            FileUtils.writeStringToFile(new File(origin, "ui/spec.json"), "{}");
+            FileUtils.writeStringToFile(new File(origin, "kbase.yml"), "module-name: Test");
+            String hash1 = commit(origin, "v1");
+            String hash2 = commit(origin, "v2");
+            // url form which is understood by git
+            URL url = new URL("file", "localhost", origin.getAbsolutePath());
+            for (String commitHash : new String[] {null, hash1}) {
+                File local = new File(rootDir, "local_" + commitHash);
+                GitUtils.gitSparseCheckout(url, commitHash, local, 
+                        Arrays.asList("ui/", "kbase.yml", "README.md"));
+                Assert.assertEquals(commitHash == null ? hash2 : hash1, 
+                        GitUtils.getCommitHash(local, url));
+                Assert.assertTrue(new File(local, "ui/spec.json").exists());
+                Assert.assertTrue(new File(local, "kbase.yml").exists());
+                Assert.assertFalse(new File(local, "spec.json").exists());
+            }
+        } finally {
+            FileUtils.deleteQuietly(rootDir);
+        }
+    }
+
+    @Test
+    public void repoZipTest() throws Exception {
+        File rootDir = File.createTempFile("git_backend_", ".test");
+        rootDir.delete();
+        rootDir.mkdirs();
+        GitHubRepoProvider ghPvd = null;
+        FileRepoProvider filePvd = null;
+        try {
+            File origin = new File(rootDir, "origin");
+            origin.mkdirs();
+            git("git init", origin);
+            FileUtils.writeStringToFile(new File(origin, "kbase.yml"),
+                    "module-name: Test\nowners: [user1]\n");
+            FileUtils.writeStringToFile(new File(origin, "ui/narrative/methods/m1/spec.json"), "{}");
+            FileUtils.writeStringToFile(new File(origin, "lib/Test/TestImpl.py"), "pass\n");
+            commit(origin, "v1");
+            URL url = new URL("file", "localhost", origin.getAbsolutePath());
+            // registered repo is tracked by url and commit hash, sparse checkout isn't zipped
+            ghPvd = new GitHubRepoProvider(url, null, new File(rootDir, "temp"));
+            Assert.assertEquals("Test", ghPvd.getModuleName());
+            Assert.assertNull(ghPvd.getRepoZip());
+            // zip of local repo has all files including sources
+            filePvd = new FileRepoProvider(origin);
+            Set<String> entries = new TreeSet<String>();
+            ZipInputStream zis = new ZipInputStream(new FileInputStream(
+                    filePvd.getRepoZip().getFile()));
+            try {
+                for (ZipEntry ze = zis.getNextEntry(); ze != null; ze = zis.getNextEntry())
+                    entries.add(ze.getName());
+            } finally {
+                zis.close();
+            }
+            Assert.assertEquals(new TreeSet<String>(Arrays.asList("kbase.yml", 
+                    "lib/Test/TestImpl.py", "spec.json", "ui/narrative/methods/m1/spec.json")), 
+                    entries);
+        } finally {
+            if (ghPvd != null)
+                ghPvd.dispose();
+            if (filePvd != null)
+                filePvd.dispose();
+            FileUtils.deleteQuietly(rootDir);
+        }
+    }
+
+    private static String commit(File repoDir, String version) throws Exception {
+        FileWriter fw = new FileWriter(new File(repoDir, "spec.json"));
+        fw.write("{\"version\": \"" + version + "\"}");
+        fw.close();
+        git("git add .", repoDir);
+        git("git -c user.name=test -c user.email=test@test commit -m " + version, repoDir);
+        return git("git rev-parse HEAD", repoDir).trim();
+    }
+
+    private static String git(String cmd, File dir) throws Exception {
+        return GitUtils.gitCommand(cmd, cmd, dir, null);
+    }
+}
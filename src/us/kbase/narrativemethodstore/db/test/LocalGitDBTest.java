@@ -0,0 +1,323 @@
+package us.kbase.narrativemethodstore.db.test;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import us.kbase.narrativemethodstore.MethodFullInfo;
+import us.kbase.narrativemethodstore.db.github.GitUtils;
+import us.kbase.narrativemethodstore.db.github.LocalGitDB;
+import us.kbase.narrativemethodstore.db.github.ProcessGitBackend;
+import us.kbase.narrativemethodstore.db.github.RepoTag;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreInitializationException;
+import us.kbase.narrativemethodstore.util.TextUtils;
+
+public class LocalGitDBTest {
+
+    @Test
+    public void refreshChangedSpecsTest() throws Exception {
+        File rootDir = File.createTempFile("local_git_db_", ".test");
+        rootDir.delete();
+        rootDir.mkdirs();
+        TestGitDB db = null;
+        try {
+            File origin = new File(rootDir, "origin");
+            origin.mkdirs();
+            git("git init", origin);
+            git("git checkout -b dev", origin);
+            FileUtils.writeStringToFile(new File(origin, "categories/active/spec.json"),
+                    "{\"name\": \"Active\", \"ver\": \"1.0.0\", \"tooltip\": \"\", \"parent\": []}");
+            writeMethod(origin, "m1", "Method 1");
+            writeMethod(origin, "m2", "Method 2");
+            commit(origin, "v1");
+            // url form which is understood by git
+            URL url = new URL("file", "localhost", origin.getAbsolutePath());
+            db = new TestGitDB(url, new File(rootDir, "local"), new File(rootDir, "temp"), 2);
+            String[] methodIds = {"m1", "m2", "m3"};
+            Assert.assertEquals(Arrays.asList("m1", "m2"), db.listMethodIds(true, null));
+            // full infos and specs are put into caches before the change
+            Assert.assertEquals("Method 1", db.getMethodFullInfo("m1", null).getName());
+            Assert.assertEquals("Method 2", db.getMethodSpec("m2", null).getInfo().getName());
+            writeMethod(origin, "m1", "Method 1 (changed)");
+            FileUtils.deleteDirectory(new File(origin, "methods/m2"));
+            writeMethod(origin, "m3", "Method 3");
+            commit(origin, "v2");
+            db.fetchAndMerge();
+            Assert.assertEquals(0, db.fullReloads);
+            Assert.assertEquals(1, db.merges());
+            Assert.assertEquals("Method 1 (changed)", db.getMethodFullInfo("m1", null).getName());
+            // nothing new is fetched, so nothing is merged
+            db.fetchAndMerge();
+            Assert.assertEquals(1, db.merges());
+            String incremental = describe(db, methodIds);
+            db.reloadAll();
+            Assert.assertEquals(describe(db, methodIds), incremental);
+        } finally {
+            if (db != null)
+                db.stopRefreshingThread();
+            FileUtils.deleteQuietly(rootDir);
+        }
+    }
+
+    @Test
+    public void forcePushTest() throws Exception {
+        File rootDir = File.createTempFile("local_git_db_", ".test");
+        rootDir.delete();
+        rootDir.mkdirs();
+        TestGitDB db = null;
+        try {
+            File origin = new File(rootDir, "origin");
+            origin.mkdirs();
+            git("git init", origin);
+            git("git checkout -b dev", origin);
+            FileUtils.writeStringToFile(new File(origin, "categories/active/spec.json"),
+                    "{\"name\": \"Active\", \"ver\": \"1.0.0\", \"tooltip\": \"\", \"parent\": []}");
+            writeMethod(origin, "m1", "Method 1");
+            commit(origin, "v1");
+            URL url = new URL("file", "localhost", origin.getAbsolutePath());
+            File localDir = new File(rootDir, "local");
+            db = new TestGitDB(url, localDir, new File(rootDir, "temp"), 2);
+            Assert.assertEquals("Method 1", db.getMethodFullInfo("m1", null).getName());
+            // history of branch is rewritten, shallow clone can't be fast-forwarded
+            writeMethod(origin, "m1", "Method 1 (amended)");
+            git("git add -A .", origin);
+            git("git -c user.name=test -c user.email=test@test commit --amend -m v1b", origin);
+            db.fetchAndMerge();
+            Assert.assertEquals(1, db.fullReloads);
+            Assert.assertEquals("Method 1 (amended)", db.getMethodFullInfo("m1", null).getName());
+            Assert.assertEquals(git("git rev-parse HEAD", origin), git("git rev-parse HEAD", localDir));
+            Assert.assertFalse(new File(rootDir, "local.new").exists());
+            Assert.assertFalse(new File(rootDir, "local.old").exists());
+            // and following changes are merged as usual
+            writeMethod(origin, "m1", "Method 1 (changed)");
+            commit(origin, "v2");
+            db.fetchAndMerge();
+            Assert.assertEquals(1, db.fullReloads);
+            Assert.assertEquals("Method 1 (changed)", db.getMethodFullInfo("m1", null).getName());
+        } finally {
+            if (db != null)
+                db.stopRefreshingThread();
+            FileUtils.deleteQuietly(rootDir);
+        }
+    }
+
+    @Test
+    public void mergeErrorTest() throws Exception {
+        File rootDir = File.createTempFile("local_git_db_", ".test");
+        rootDir.delete();
+        rootDir.mkdirs();
+        TestGitDB db = null;
+        try {
+            File origin = new File(rootDir, "origin");
+            origin.mkdirs();
+            git("git init", origin);
+            git("git checkout -b dev", origin);
+            FileUtils.writeStringToFile(new File(origin, "categories/active/spec.json"),
+                    "{\"name\": \"Active\", \"ver\": \"1.0.0\", \"tooltip\": \"\", \"parent\": []}");
+            writeMethod(origin, "m1", "Method 1");
+            commit(origin, "v1");
+            URL url = new URL("file", "localhost", origin.getAbsolutePath());
+            File localDir = new File(rootDir, "local");
+            db = new TestGitDB(url, localDir, new File(rootDir, "temp"), 2);
+            String oldHead = git("git rev-parse HEAD", localDir);
+            File marker = new File(localDir, ".git/marker");
+            FileUtils.writeStringToFile(marker, "old clone");
+            writeMethod(origin, "m1", "Method 1 (changed)");
+            commit(origin, "v2");
+            // merge fails for other reason than rewritten history, clone is kept
+            File lock = new File(localDir, ".git/index.lock");
+            FileUtils.writeStringToFile(lock, "");
+            db.fetchAndMerge();
+            Assert.assertEquals(0, db.fullReloads);
+            Assert.assertTrue(marker.exists());
+            Assert.assertEquals(oldHead, git("git rev-parse HEAD", localDir));
+            Assert.assertEquals("Method 1", db.getMethodFullInfo("m1", null).getName());
+            // and it's merged after next fetch
+            lock.delete();
+            db.fetchAndMerge();
+            Assert.assertEquals(0, db.fullReloads);
+            Assert.assertTrue(marker.exists());
+            Assert.assertEquals("Method 1 (changed)", db.getMethodFullInfo("m1", null).getName());
+        } finally {
+            if (db != null)
+                db.stopRefreshingThread();
+            FileUtils.deleteQuietly(rootDir);
+        }
+    }
+
+    @Test
+    public void batchLoadTest() throws Exception {
+        File rootDir = File.createTempFile("local_git_db_", ".test");
+        rootDir.delete();
+        rootDir.mkdirs();
+        TestGitDB db = null;
+        try {
+            File origin = new File(rootDir, "origin");
+            origin.mkdirs();
+            git("git init", origin);
+            git("git checkout -b dev", origin);
+            FileUtils.writeStringToFile(new File(origin, "categories/active/spec.json"),
+                    "{\"name\": \"Active\", \"ver\": \"1.0.0\", \"tooltip\": \"\", \"parent\": []}");
+            List<String> methodIds = new ArrayList<String>();
+            for (int i = 0; i < 8; i++) {
+                writeMethod(origin, "m" + i, "Method " + i);
+                methodIds.add("m" + i);
+            }
+            commit(origin, "v1");
+            URL url = new URL("file", "localhost", origin.getAbsolutePath());
+            // single thread in batch pool, the rest of misses is loaded by caller
+            db = new TestGitDB(url, new File(rootDir, "local"), new File(rootDir, "temp"), 1);
+            List<MethodFullInfo> infos = db.getMethodFullInfo(methodIds, null);
+            Assert.assertEquals(methodIds.size(), infos.size());
+            for (int i = 0; i < methodIds.size(); i++)
+                Assert.assertEquals("Method " + i, infos.get(i).getName());
+            try {
+                db.getMethodFullInfo(Arrays.asList("m0", "unknown", "m1"), null);
+                Assert.fail("Unknown method should not be loaded");
+            } catch (NarrativeMethodStoreException ex) {
+                Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("unknown"));
+            }
+        } finally {
+            if (db != null)
+                db.stopRefreshingThread();
+            FileUtils.deleteQuietly(rootDir);
+        }
+    }
+
+    @Test
+    public void warmStartTest() throws Exception {
+        File rootDir = File.createTempFile("local_git_db_", ".test");
+        rootDir.delete();
+        rootDir.mkdirs();
+        TestGitDB db = null;
+        try {
+            File origin = new File(rootDir, "origin");
+            origin.mkdirs();
+            git("git init", origin);
+            git("git checkout -b dev", origin);
+            FileUtils.writeStringToFile(new File(origin, "categories/active/spec.json"),
+                    "{\"name\": \"Active\", \"ver\": \"1.0.0\", \"tooltip\": \"\", \"parent\": []}");
+            writeMethod(origin, "m1", "Method 1");
+            commit(origin, "v1");
+            URL url = new URL("file", "localhost", origin.getAbsolutePath());
+            File localDir = new File(rootDir, "local");
+            File indexFile = new File(localDir, ".git/narrative_method_store_index.json.gz");
+            String[] methodIds = {"m1"};
+            db = new TestGitDB(url, localDir, new File(rootDir, "temp"), 2, true);
+            String expected = describe(db, methodIds);
+            db.stopRefreshingThread();
+            db = null;
+            Assert.assertTrue(indexFile.exists());
+            // saved index is used
+            db = new TestGitDB(url, localDir, new File(rootDir, "temp"), 2, true);
+            Assert.assertEquals(expected, describe(db, methodIds));
+            db.stopRefreshingThread();
+            db = null;
+            // corrupt index is rebuilt instead of failing on start
+            byte[] data = FileUtils.readFileToByteArray(indexFile);
+            FileUtils.writeByteArrayToFile(indexFile, Arrays.copyOf(data, data.length / 2));
+            db = new TestGitDB(url, localDir, new File(rootDir, "temp"), 2, true);
+            Assert.assertEquals(expected, describe(db, methodIds));
+            Assert.assertTrue(Arrays.equals(data, FileUtils.readFileToByteArray(indexFile)));
+        } finally {
+            if (db != null)
+                db.stopRefreshingThread();
+            FileUtils.deleteQuietly(rootDir);
+        }
+    }
+
+    private static String describe(LocalGitDB db, String[] methodIds) throws Exception {
+        StringBuilder ret = new StringBuilder();
+        ret.append(db.listMethodIds(true, null)).append("\n");
+        ret.append(db.getCategoriesIndex().getCategories().keySet()).append("\n");
+        ret.append(db.getCategoriesIndex().getMethodList(null)).append("\n");
+        for (String methodId : methodIds) {
+            try {
+                ret.append(db.getMethodFullInfo(methodId, null)).append("\n");
+                ret.append(db.getMethodSpec(methodId, null).getInfo()).append("\n");
+            } catch (NarrativeMethodStoreException ex) {
+                ret.append("Error loading ").append(methodId).append("\n");
+            }
+        }
+        return ret.toString();
+    }
+
+    private static void writeMethod(File repoDir, String methodId, String name) throws Exception {
+        File methodDir = new File(repoDir, "methods/" + methodId);
+        FileUtils.writeStringToFile(new File(methodDir, "spec.json"), TextUtils.text(
+                LocalGitDBTest.class.getResourceAsStream("spec_1.properties")));
+        FileUtils.writeStringToFile(new File(methodDir, "display.yaml"), TextUtils.text(
+                LocalGitDBTest.class.getResourceAsStream("display_1.properties"))
+                .replace("name: Reads Set Editor", "name: " + name));
+    }
+
+    private static String commit(File repoDir, String version) throws Exception {
+        git("git add -A .", repoDir);
+        git("git -c user.name=test -c user.email=test@test commit -m " + version, repoDir);
+        return git("git rev-parse HEAD", repoDir).trim();
+    }
+
+    private static String git(String cmd, File dir) throws Exception {
+        return GitUtils.gitCommand(cmd, cmd, dir, null);
+    }
+
+    private static class CountingGitBackend extends ProcessGitBackend {
+        volatile int merges = 0;
+
+        CountingGitBackend(URL gitRepoUrl) {
+            super(gitRepoUrl);
+        }
+
+        @Override
+        public String gitMergeFetchHead(File localPath)
+                throws NarrativeMethodStoreInitializationException {
+            merges++;
+            return super.gitMergeFetchHead(localPath);
+        }
+    }
+
+    private static class TestGitDB extends LocalGitDB {
+        int fullReloads = 0;
+
+        TestGitDB(URL gitRepoUrl, File localPath, File tempDir, int batchLoadThreads)
+                throws NarrativeMethodStoreInitializationException {
+            this(gitRepoUrl, localPath, tempDir, batchLoadThreads, false);
+        }
+
+        TestGitDB(URL gitRepoUrl, File localPath, File tempDir, int batchLoadThreads,
+                boolean warmStart) throws NarrativeMethodStoreInitializationException {
+            super(gitRepoUrl, "dev", localPath, 1000, 100, null, tempDir, null,
+                    RepoTag.release, 2, null, warmStart, 1, batchLoadThreads, 
+                    new CountingGitBackend(gitRepoUrl));
+        }
+
+        int merges() {
+            return ((CountingGitBackend)git).merges;
+        }
+
+        @Override
+        protected synchronized String gitFetch() throws NarrativeMethodStoreInitializationException {
+            // serialized with fetch of refreshing thread
+            return super.gitFetch();
+        }
+
+        void fetchAndMerge() throws NarrativeMethodStoreInitializationException {
+            gitFetch();
+            mergeFetchedChanges();
+        }
+
+        @Override
+        public void reloadAll() throws NarrativeMethodStoreException {
+            fullReloads++;
+            super.reloadAll();
+        }
+    }
+}
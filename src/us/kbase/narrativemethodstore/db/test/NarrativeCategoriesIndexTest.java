@@ -0,0 +1,80 @@
+package us.kbase.narrativemethodstore.db.test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import us.kbase.narrativemethodstore.MethodBriefInfo;
+import us.kbase.narrativemethodstore.db.NarrativeCategoriesIndex;
+import us.kbase.narrativemethodstore.db.github.MethodId;
+import us.kbase.narrativemethodstore.db.github.RepoTag;
+
+public class NarrativeCategoriesIndexTest {
+
+    @Test
+    public void methodViewsTest() throws Exception {
+        NarrativeCategoriesIndex index = new NarrativeCategoriesIndex(RepoTag.release);
+        index.addOrUpdateMethod(new MethodId("static_method"), brief("static_method", "Static"));
+        index.addOrUpdateMethod(new MethodId("Mod", "m1", RepoTag.dev), brief("Mod/m1", "M1 dev"));
+        index.addOrUpdateMethod(new MethodId("Mod", "m1", RepoTag.release), brief("Mod/m1", "M1 release"));
+        index.addOrUpdateMethod(new MethodId("Mod", "broken", RepoTag.dev),
+                brief("Mod/broken", "Broken").withLoadingError("error"));
+        Assert.assertEquals(Arrays.asList("static_method", "Mod/broken", "Mod/m1"),
+                index.getMethodIds("dev", true));
+        Assert.assertEquals(Arrays.asList("static_method", "Mod/m1"),
+                index.getMethodIds("dev", false));
+        Assert.assertEquals("M1 release", index.getMethods(null).get("Mod/m1").getName());
+        Assert.assertEquals(2, index.getMethodList(null).size());
+        Assert.assertEquals("M1 dev", index.getMethodIdsAndNames("dev").get("Mod/m1"));
+        Assert.assertEquals(Arrays.asList("static_method"),
+                index.getMethodIds("0123456789abcdef0123456789abcdef01234567", true));
+        Assert.assertSame(index.getMethods("beta"), index.getMethods("beta"));
+        index.addOrUpdateMethod(new MethodId("Mod", "m2", RepoTag.beta), brief("Mod/m2", "M2 beta"));
+        Assert.assertEquals(Arrays.asList("static_method", "Mod/m2"),
+                index.getMethodIds("beta", true));
+        index.removeMethod(new MethodId("static_method"));
+        Assert.assertEquals(Arrays.asList("Mod/m2"), index.getMethodIds("beta", true));
+        try {
+            index.getMethodList("dev").clear();
+            Assert.fail("Method views should be unmodifiable");
+        } catch (UnsupportedOperationException ignore) {}
+    }
+
+    @Test
+    public void dynamicRepoModuleTest() throws Exception {
+        NarrativeCategoriesIndex index = new NarrativeCategoriesIndex(RepoTag.dev);
+        Map<MethodId, MethodBriefInfo> methods = new TreeMap<MethodId, MethodBriefInfo>();
+        methods.put(new MethodId("Mod", "m1", RepoTag.dev), brief("Mod/m1", "M1 dev"));
+        methods.put(new MethodId("Mod", "m1", RepoTag.beta), brief("Mod/m1", "M1 beta"));
+        index.updateDynamicRepoModule("Mod", new HashSet<RepoTag>(RepoTag.values()), methods, null);
+        index.addOrUpdateMethod(new MethodId("Other", "m3", RepoTag.beta), brief("Other/m3", "M3"));
+        Assert.assertEquals(Arrays.asList("Mod/m1", "Other/m3"), index.getMethodIds("beta", true));
+        // module is pushed to beta with another set of methods
+        methods = new TreeMap<MethodId, MethodBriefInfo>();
+        methods.put(new MethodId("Mod", "m2", RepoTag.beta), brief("Mod/m2", "M2 beta"));
+        Set<MethodId> changed = index.updateDynamicRepoModule("Mod", 
+                new HashSet<RepoTag>(Arrays.asList(RepoTag.beta)), methods, null);
+        Assert.assertEquals(2, changed.size());
+        Assert.assertEquals(Arrays.asList("Mod/m2", "Other/m3"), index.getMethodIds("beta", true));
+        Assert.assertEquals(Arrays.asList("Mod/m1"), index.getMethodIds("dev", true));
+        Assert.assertEquals(2, index.getDynamicRepoMethods().size());
+        // copy shares views of original index until its methods are changed
+        index.buildMethodViews();
+        NarrativeCategoriesIndex copy = new NarrativeCategoriesIndex(index);
+        Assert.assertSame(index.getMethods("dev"), copy.getMethods("dev"));
+        copy.updateDynamicRepoModule("Mod", new HashSet<RepoTag>(Arrays.asList(RepoTag.dev)),
+                new TreeMap<MethodId, MethodBriefInfo>(), null);
+        Assert.assertEquals(Arrays.asList(), copy.getMethodIds("dev", true));
+        Assert.assertEquals(Arrays.asList("Mod/m1"), index.getMethodIds("dev", true));
+    }
+
+    private static MethodBriefInfo brief(String id, String name) {
+        return new MethodBriefInfo().withId(id).withName(name);
+    }
+}
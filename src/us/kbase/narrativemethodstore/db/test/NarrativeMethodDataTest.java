@@ -1,5 +1,7 @@
 package us.kbase.narrativemethodstore.db.test;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.junit.Assert;
@@ -95,7 +97,66 @@ public class NarrativeMethodDataTest {
         Assert.assertEquals(1L, (long)group.getWithBorder());
     }
 
+    @Test
+    public void testBriefOnly() throws Exception {
+        for (int num = 1; num <= 9; num++) {
+            String fullError = null;
+            String briefError = null;
+            NarrativeMethodData full = null;
+            NarrativeMethodData brief = null;
+            try {
+                full = load(num, false);
+            } catch (NarrativeMethodStoreException ex) {
+                fullError = ex.getMessage();
+            }
+            try {
+                brief = load(num, true);
+            } catch (NarrativeMethodStoreException ex) {
+                briefError = ex.getMessage();
+            }
+            Assert.assertEquals("Method " + num, fullError, briefError);
+            if (full == null)
+                continue;
+            Assert.assertEquals("Method " + num, full.getMethodBriefInfo().toString(),
+                    brief.getMethodBriefInfo().toString());
+            Assert.assertNull(brief.getMethodFullInfo());
+            Assert.assertNull(brief.getMethodSpec());
+        }
+    }
+
+    @Test
+    public void testPublicationsCastError() throws Exception {
+        expectedEx.expect(NarrativeMethodStoreException.class);
+        expectedEx.expectMessage("Cannot cast data within path [publications] in display.yaml " +
+                "({\"pmid\":123,\"link\":[1.5,\"a\"]}) to type \"list of strings\"");
+        Map<String, Object> pub = new LinkedHashMap<String, Object>();
+        pub.put("pmid", 123);
+        pub.put("link", Arrays.asList(1.5, "a"));
+        load(1, false, pub);
+    }
+
+    @Test
+    public void testPublications() throws Exception {
+        Map<String, Object> pub = new LinkedHashMap<String, Object>();
+        pub.put("pmid", 123L);
+        pub.put("link", "http://link");
+        NarrativeMethodData data = load(1, false, Arrays.asList(pub, null));
+        Assert.assertEquals(1, data.getMethodFullInfo().getPublications().size());
+        Assert.assertEquals("123", data.getMethodFullInfo().getPublications().get(0).getPmid());
+        Assert.assertEquals("http://link", 
+                data.getMethodFullInfo().getPublications().get(0).getDisplayText());
+    }
+
     private static NarrativeMethodData load(int num) throws Exception {
+        return load(num, false);
+    }
+
+    private static NarrativeMethodData load(int num, boolean briefOnly) throws Exception {
+        return load(num, briefOnly, null);
+    }
+
+    private static NarrativeMethodData load(int num, boolean briefOnly, 
+            Object publications) throws Exception {
         FileLookup fl = new FileLookup() {
             @Override
             public String loadFileContent(String fileName) {
@@ -110,8 +171,10 @@ public class NarrativeMethodDataTest {
                 loadTextResource("spec_" + num + ".properties"));
         Map<String,Object> display = YamlUtils.getDocumentAsYamlMap(
                 loadTextResource("display_" + num + ".properties"));
+        if (publications != null)
+            display.put("publications", publications);
         return new NarrativeMethodData("method_" + num, 
-                spec, display, fl, null, null, null, null, null);
+                spec, display, fl, null, null, null, null, null, briefOnly);
     }
     
     private static String loadTextResource(String name) throws Exception {
@@ -0,0 +1,139 @@
+package us.kbase.narrativemethodstore.db.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import us.kbase.narrativemethodstore.AppBriefInfo;
+import us.kbase.narrativemethodstore.Category;
+import us.kbase.narrativemethodstore.MethodBriefInfo;
+import us.kbase.narrativemethodstore.TypeInfo;
+import us.kbase.narrativemethodstore.db.NarrativeCategoriesIndex;
+import us.kbase.narrativemethodstore.db.github.MethodId;
+import us.kbase.narrativemethodstore.db.github.PersistedIndex;
+import us.kbase.narrativemethodstore.db.github.RepoTag;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+
+public class PersistedIndexTest {
+    private File dir;
+    private File file;
+
+    @Before
+    public void createDir() throws Exception {
+        dir = File.createTempFile("persisted_index_", ".test");
+        dir.delete();
+        dir.mkdirs();
+        file = new File(dir, "index.json.gz");
+    }
+
+    @After
+    public void deleteDir() {
+        FileUtils.deleteQuietly(dir);
+    }
+
+    @Test
+    public void roundTripTest() throws Exception {
+        NarrativeCategoriesIndex index = createIndex();
+        PersistedIndex.save(file, "url|dev|hash1|Mod:1:null:null;", index);
+        Assert.assertFalse(new File(dir, "index.json.gz.tmp").exists());
+        NarrativeCategoriesIndex loaded = PersistedIndex.load(file,
+                "url|dev|hash1|Mod:1:null:null;", RepoTag.release);
+        Assert.assertNotNull(loaded);
+        Assert.assertEquals(describe(index), describe(loaded));
+        Assert.assertEquals(Arrays.asList("static_method", "Mod/m1"),
+                loaded.getMethodIds("dev", true));
+        Assert.assertEquals("M1 release", loaded.getMethods(null).get("Mod/m1").getName());
+        // saving again replaces old file
+        index.addOrUpdateApp("app2", new AppBriefInfo().withId("app2").withName("App 2"));
+        PersistedIndex.save(file, "url|dev|hash2|Mod:1:null:null;", index);
+        loaded = PersistedIndex.load(file, "url|dev|hash2|Mod:1:null:null;", RepoTag.release);
+        Assert.assertEquals(describe(index), describe(loaded));
+    }
+
+    @Test
+    public void keyMismatchTest() throws Exception {
+        Assert.assertNull(PersistedIndex.load(file, "url|dev|hash1|", RepoTag.release));
+        PersistedIndex.save(file, "url|dev|hash1|Mod:1:null:null;", createIndex());
+        // specs-repo commit is changed
+        Assert.assertNull(PersistedIndex.load(file, "url|dev|hash2|Mod:1:null:null;",
+                RepoTag.release));
+        // dynamic repo is registered again
+        Assert.assertNull(PersistedIndex.load(file, "url|dev|hash1|Mod:2:null:null;",
+                RepoTag.release));
+        // dynamic repo is added
+        Assert.assertNull(PersistedIndex.load(file,
+                "url|dev|hash1|Mod:1:null:null;Other:3:null:null;", RepoTag.release));
+    }
+
+    @Test
+    public void corruptFileTest() throws Exception {
+        PersistedIndex.save(file, "key", createIndex());
+        byte[] data = FileUtils.readFileToByteArray(file);
+        // truncated gzip
+        FileUtils.writeByteArrayToFile(file, Arrays.copyOf(data, data.length / 2));
+        checkLoadingError();
+        // not gzip at all
+        FileUtils.writeStringToFile(file, "{\"key\": \"key\"}");
+        checkLoadingError();
+        // empty file
+        FileUtils.writeByteArrayToFile(file, new byte[0]);
+        checkLoadingError();
+    }
+
+    private void checkLoadingError() {
+        try {
+            PersistedIndex.load(file, "key", RepoTag.release);
+            Assert.fail("Corrupt file should not be loaded");
+        } catch (IOException ignore) {
+            // LocalGitDB rebuilds index in this case (see LocalGitDBTest.warmStartTest)
+        }
+    }
+
+    private static NarrativeCategoriesIndex createIndex() {
+        NarrativeCategoriesIndex index = new NarrativeCategoriesIndex(RepoTag.release);
+        Map<String, Category> categories = new TreeMap<String, Category>();
+        categories.put("active", new Category().withId("active").withName("Active"));
+        index.updateAllCategories(categories);
+        index.addOrUpdateMethod(new MethodId("static_method"),
+                new MethodBriefInfo().withId("static_method").withName("Static"));
+        Map<MethodId, MethodBriefInfo> methods = new TreeMap<MethodId, MethodBriefInfo>();
+        methods.put(new MethodId("Mod", "m1", RepoTag.dev),
+                new MethodBriefInfo().withId("Mod/m1").withName("M1 dev"));
+        methods.put(new MethodId("Mod", "m1", RepoTag.release),
+                new MethodBriefInfo().withId("Mod/m1").withName("M1 release"));
+        index.updateDynamicRepoModule("Mod", new HashSet<RepoTag>(RepoTag.values()), methods,
+                null);
+        index.updateDynamicRepoModule("Broken", new HashSet<RepoTag>(RepoTag.values()),
+                new TreeMap<MethodId, MethodBriefInfo>(),
+                new NarrativeMethodStoreException("Error loading Broken"));
+        index.addOrUpdateApp("app1", new AppBriefInfo().withId("app1").withName("App 1"));
+        index.addOrUpdateType("Mod.Type", new TypeInfo().withTypeName("Mod.Type").withName("Type"));
+        return index;
+    }
+
+    private static String describe(NarrativeCategoriesIndex index) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, String> errors = new TreeMap<String, String>();
+        for (Map.Entry<String, Exception> entry :
+                index.getDynamicRepoModuleNameToLoadingError().entrySet())
+            errors.put(entry.getKey(), entry.getValue().getMessage());
+        return mapper.writeValueAsString(index.getCategories()) + "\n" +
+                index.getAllMethods().keySet() + "\n" +
+                mapper.writeValueAsString(index.getAllMethods().values()) + "\n" +
+                mapper.writeValueAsString(new TreeMap<String, AppBriefInfo>(index.getApps())) + "\n" +
+                mapper.writeValueAsString(new TreeMap<String, TypeInfo>(index.getTypes())) + "\n" +
+                index.getDynamicRepoMethods() + "\n" + errors;
+    }
+}
@@ -0,0 +1,82 @@
+package us.kbase.narrativemethodstore.db.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import us.kbase.narrativemethodstore.db.github.RepoRegistrationQueue;
+import us.kbase.narrativemethodstore.db.github.RepoRegistrationQueue.RegistrationJob;
+import us.kbase.narrativemethodstore.db.github.RepoRegistrationQueue.Stage;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+
+public class RepoRegistrationQueueTest {
+
+    @Test
+    public void queueTest() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger running = new AtomicInteger(0);
+        final AtomicInteger maxRunning = new AtomicInteger(0);
+        final RepoRegistrationQueue[] queue = {null};
+        queue[0] = new RepoRegistrationQueue(3, 1, new RepoRegistrationQueue.JobRunner() {
+            @Override
+            public long run(RegistrationJob job) throws NarrativeMethodStoreException {
+                if (job.getUrl().equals("bad"))
+                    throw new NarrativeMethodStoreException("Bad repo");
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    throw new NarrativeMethodStoreException(ex);
+                }
+                // all jobs belong to the same module
+                job.setModuleName("Module");
+                Lock lock = queue[0].getModuleLock(job.getModuleName());
+                lock.lock();
+                try {
+                    maxRunning.set(Math.max(maxRunning.get(), running.incrementAndGet()));
+                    Thread.sleep(10);
+                    running.decrementAndGet();
+                } catch (InterruptedException ex) {
+                    throw new NarrativeMethodStoreException(ex);
+                } finally {
+                    lock.unlock();
+                }
+                return job.getId();
+            }
+        });
+        try {
+            List<RegistrationJob> jobs = new ArrayList<RegistrationJob>();
+            // 3 jobs are taken by workers and 1 job is waiting in the queue
+            for (int i = 0; i < 4; i++)
+                jobs.add(queue[0].submit("user", "url" + i, null));
+            try {
+                queue[0].submit("user", "url4", null);
+                Assert.fail("Queue should be full");
+            } catch (NarrativeMethodStoreException ex) {
+                Assert.assertTrue(ex.getMessage().contains("queue is full"));
+            }
+            release.countDown();
+            for (RegistrationJob job : jobs) {
+                Assert.assertEquals(job.getId(), job.waitForResult());
+                Assert.assertEquals(Stage.done, job.getStage());
+            }
+            Assert.assertEquals(1, maxRunning.get());
+            RegistrationJob bad = queue[0].submit("user", "bad", null);
+            try {
+                bad.waitForResult();
+                Assert.fail("Registration should fail");
+            } catch (NarrativeMethodStoreException ex) {
+                Assert.assertEquals("Bad repo", ex.getMessage());
+            }
+            Assert.assertEquals(Stage.error, bad.getStage());
+            Assert.assertEquals(1, queue[0].listJobs("url1").size());
+        } finally {
+            queue[0].shutdown();
+        }
+    }
+}
@@ -28,5 +28,12 @@ public class ServiceUrlTemplateEvaluaterTest {
                 sute.evaluate("${endpoint}/${module-name}", moduleName, null));
         Assert.assertEquals(host + ":8080" + base, 
                 sute.evaluate("${endpoint-host}:8080${endpoint-base}", moduleName, null));
+        // cached template with different parameters
+        Assert.assertEquals(host + base + "/other:" + version, 
+                sute.evaluate("${url}", "Other", version));
+        Assert.assertEquals(host + base + "/" + module + ":" + version, 
+                sute.evaluate("${url}", moduleName, version));
+        Assert.assertEquals("dev", 
+                sute.evaluate("#if($version)release#{else}dev#end", moduleName, null));
     }
 }
@@ -0,0 +1,156 @@
+package us.kbase.narrativemethodstore.db.test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import us.kbase.common.service.UObject;
+import us.kbase.narrativemethodstore.Publication;
+import us.kbase.narrativemethodstore.db.ValueConverter;
+import us.kbase.narrativemethodstore.db.github.YamlUtils;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+
+public class ValueConverterTest {
+
+    @Test
+    public void nestedTest() throws Exception {
+        Map<String, Object> pub = new LinkedHashMap<String, Object>();
+        pub.put("pmid", 12345);
+        pub.put("link", "http://link");
+        pub.put("display-text", null);
+        Map<String, Object> doc = new LinkedHashMap<String, Object>();
+        doc.put("publications", Arrays.asList(pub, null, Arrays.asList(1, "a", 2.5)));
+        doc.put("owners", Arrays.asList("u1", "u2"));
+        doc.put("nested", map("a", map("b", Arrays.asList(map("c", true)))));
+        checkSame(doc, new TypeReference<Map<String, Object>>() {});
+        checkSame(doc.get("publications"), new TypeReference<List<Object>>() {});
+        checkSame(doc.get("owners"), new TypeReference<List<String>>() {});
+        checkSame(doc.get("nested"), new TypeReference<Map<String, Map<String, List<Object>>>>() {});
+        checkSame(pub, Publication.class);
+        Publication p = ValueConverter.convert(pub, Publication.class);
+        Assert.assertEquals("12345", p.getPmid());
+        Assert.assertEquals("http://link", p.getLink());
+    }
+
+    @Test
+    public void numbersTest() throws Exception {
+        Object[] values = {5, 5L, (short)5, 5000000000L, BigInteger.TEN,
+                new BigInteger("50000000000000000000"), new BigDecimal("2.50"),
+                1.5, 1.0, 1.5f, 0.1f, -0.0, Double.NaN, "7", "1.25"};
+        for (Object value : values) {
+            checkSame(value, Integer.class);
+            checkSame(value, Long.class);
+            checkSame(value, Double.class);
+            checkSame(value, String.class);
+            checkSame(value, Object.class);
+            checkSame(Arrays.asList(value), new TypeReference<List<Object>>() {});
+            checkSame(map("v", value), new TypeReference<Map<String, Object>>() {});
+            checkSame(map("v", value), new TypeReference<Map<String, Long>>() {});
+        }
+        // module-version: 1.0 in kbase.yml is parsed as double
+        Assert.assertEquals("1.0", ValueConverter.convert(1.0, String.class));
+        Assert.assertEquals(5L, (long)ValueConverter.convert(5, Long.class));
+    }
+
+    @Test
+    public void typeMismatchTest() throws Exception {
+        checkSame("abc", new TypeReference<List<Object>>() {});
+        checkSame(map("a", 1), new TypeReference<List<String>>() {});
+        checkSame(Arrays.asList("a"), new TypeReference<Map<String, Object>>() {});
+        checkSame("abc", Long.class);
+        checkSame(map("v", "x"), new TypeReference<Map<String, Long>>() {});
+        checkSame(map("pmid", map("x", 1)), Publication.class);
+        checkSame(map("unknown_field", 1), Publication.class);
+        // values which already have target class are not copied
+        List<Object> list = Arrays.<Object>asList("a", 1);
+        Assert.assertSame(list, ValueConverter.convert(list, List.class));
+    }
+
+    @Test
+    public void propertyErrorTest() throws Exception {
+        Map<String, Object> map = map("owners", "user1");
+        try {
+            YamlUtils.getPropertyNotNull("kbase.yml", map, "owners",
+                    new TypeReference<List<String>>() {});
+            Assert.fail("Wrong type should be reported");
+        } catch (NarrativeMethodStoreException ex) {
+            Assert.assertTrue(ex.getMessage(), ex.getMessage().startsWith(
+                    "Error reading property [owners] in kbase.yml: "));
+        }
+        Assert.assertEquals(Arrays.asList("user1"), YamlUtils.getPropertyNotNull("kbase.yml",
+                map("owners", Arrays.asList("user1")), "owners",
+                new TypeReference<List<String>>() {}));
+    }
+
+    private static Map<String, Object> map(String key, Object value) {
+        Map<String, Object> ret = new LinkedHashMap<String, Object>();
+        ret.put(key, value);
+        return ret;
+    }
+
+    private static void checkSame(Object value, Class<?> type) throws Exception {
+        checkSame(value, ValueConverter.getJavaType(type));
+    }
+
+    private static void checkSame(Object value, TypeReference<?> type) throws Exception {
+        checkSame(value, ValueConverter.getJavaType(type.getType()));
+    }
+
+    /**
+     * Compares conversion with JSON string round trip used before (see UObject
+     * transformObjectToString/transformStringToObject).
+     */
+    private static void checkSame(Object value, JavaType type) throws Exception {
+        ObjectMapper mapper = UObject.getMapper();
+        String json = mapper.writeValueAsString(value);
+        Object expected = null;
+        String expectedError = null;
+        try {
+            expected = mapper.readValue(json, type);
+        } catch (Exception ex) {
+            expectedError = ex.getClass().getSimpleName();
+        }
+        Object actual = null;
+        String actualError = null;
+        try {
+            actual = ValueConverter.convert(value, type);
+        } catch (IllegalArgumentException ex) {
+            actualError = ex.getCause().getClass().getSimpleName();
+        }
+        String msg = json + " -> " + type;
+        Assert.assertEquals(msg, expectedError, actualError);
+        Assert.assertEquals(msg, describe(expected), describe(actual));
+    }
+
+    private static String describe(Object value) throws Exception {
+        // class of each number is included
+        if (value instanceof Map) {
+            StringBuilder ret = new StringBuilder("{");
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet())
+                ret.append(entry.getKey()).append("=").append(describe(entry.getValue())).append(",");
+            return ret.append("}").toString();
+        }
+        if (value instanceof List) {
+            StringBuilder ret = new StringBuilder("[");
+            for (Object item : (List<?>)value)
+                ret.append(describe(item)).append(",");
+            return ret.append("]").toString();
+        }
+        if (value == null || value instanceof String || value instanceof Boolean)
+            return "" + value;
+        if (value instanceof Number)
+            return value.getClass().getSimpleName() + ":" + value;
+        return value.getClass().getSimpleName() + ":" + UObject.getMapper().writeValueAsString(value);
+    }
+}
@@ -0,0 +1,105 @@
+package us.kbase.narrativemethodstore.db.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.yaml.snakeyaml.Yaml;
+
+import us.kbase.narrativemethodstore.db.github.YamlUtils;
+import us.kbase.narrativemethodstore.db.github.YamlUtils.SanitizingReader;
+import us.kbase.narrativemethodstore.util.TextUtils;
+
+public class YamlUtilsTest {
+    // control, line break, DEL, non-ASCII and surrogate pair characters next to each other
+    private static final String DIRTY = "name: A\u0001B\tC\r\n" +
+            "tooltip: \u00e9t\u00e9\u007f\u0080\n\u0000\u001f" +
+            "description: \ud83d\ude00 end \u000b\r";
+
+    @Test
+    public void sanitizeAtBufferBoundariesTest() throws Exception {
+        String expected = cleanYaml(DIRTY);
+        Assert.assertEquals(expected, readSingleChars(new SanitizingReader(new StringReader(DIRTY))));
+        for (int chunk = 1; chunk <= DIRTY.length() + 1; chunk++) {
+            for (int bufSize = 1; bufSize <= 8; bufSize++) {
+                Reader r = new SanitizingReader(new ChunkedReader(new StringReader(DIRTY), chunk));
+                Assert.assertEquals("chunk=" + chunk + ", buffer=" + bufSize, expected,
+                        readWithOffset(r, bufSize));
+            }
+        }
+    }
+
+    @Test
+    public void loadDocumentTest() throws Exception {
+        String dirty = TextUtils.text(getClass().getResourceAsStream("display_1.properties"))
+                .replace("name: Reads Set Editor", "name: Reads\u0007 Set Editor\u2013");
+        Object expected = new Yaml().load(cleanYaml(dirty));
+        Assert.assertEquals(expected, YamlUtils.loadDocument(dirty));
+        Assert.assertEquals(expected, YamlUtils.getDocumentAsYamlMap(dirty));
+        Assert.assertEquals(expected, YamlUtils.getDocumentAsYamlMap(
+                new ByteArrayInputStream(dirty.getBytes("utf-8"))));
+        Assert.assertEquals(expected, YamlUtils.loadDocument(
+                new ChunkedReader(new StringReader(dirty), 3)));
+    }
+
+    /**
+     * Copy of removed Validator.cleanYaml which sanitized whole document before parsing.
+     */
+    private static String cleanYaml(String display) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < display.length(); i++) {
+            char ch = display.charAt(i);
+            if ((ch < 32 && ch != 10 && ch != 13) || ch >= 127)
+                ch = ' ';
+            sb.append(ch);
+        }
+        return sb.toString();
+    }
+
+    private static String readSingleChars(Reader r) throws IOException {
+        StringBuilder ret = new StringBuilder();
+        for (int ch = r.read(); ch >= 0; ch = r.read())
+            ret.append((char)ch);
+        return ret.toString();
+    }
+
+    private static String readWithOffset(Reader r, int bufSize) throws IOException {
+        StringBuilder ret = new StringBuilder();
+        // chars around the window should not be touched by the reader
+        char[] buf = new char[bufSize + 4];
+        while (true) {
+            Arrays.fill(buf, '\u0001');
+            int n = r.read(buf, 2, bufSize);
+            if (n < 0)
+                break;
+            Assert.assertEquals('\u0001', buf[1]);
+            Assert.assertEquals('\u0001', buf[2 + n]);
+            ret.append(buf, 2, n);
+        }
+        return ret.toString();
+    }
+
+    /**
+     * Returns at most given number of chars per read so that characters to be replaced
+     * appear at any position of caller's buffer.
+     */
+    private static class ChunkedReader extends FilterReader {
+        private final int chunk;
+
+        ChunkedReader(Reader in, int chunk) {
+            super(in);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            return super.read(cbuf, off, Math.min(len, chunk));
+        }
+    }
+}
@@ -31,6 +31,7 @@ import us.kbase.common.service.ServerException;
 import us.kbase.common.service.Tuple4;
 import us.kbase.narrativemethodstore.*;
 import us.kbase.narrativemethodstore.db.DynamicRepoDB;
+import us.kbase.narrativemethodstore.db.github.RepoRegistrationQueue.RegistrationJob;
 import us.kbase.narrativemethodstore.db.mongo.test.MongoDBHelper;
 
 /**
@@ -113,6 +114,10 @@ public class FullServerTest {
 				status.getUpdateInterval()!=null);
 		assertTrue("Testing that status() returns a git spec update interval that is not empty",
 				status.getUpdateInterval().length()>0);
+		assertTrue("Testing that status() returns a positive index generation",
+				status.getIndexGeneration()!=null && status.getIndexGeneration()>0);
+		assertTrue("Testing that status() returns a last refresh duration",
+				status.getLastRefreshDurationMs()!=null && status.getLastRefreshDurationMs()>=0);
 	}
 	
 	
@@ -1104,6 +1109,13 @@ public class FullServerTest {
 	        MethodBriefInfo bi = methods.get(methodId);
 	        Assert.assertNull(bi);
 	        SERVER.getLocalGitDB().registerRepo(admin1, gitUrl, null);
+	        // registration status requires authentication, so it's checked on server side
+	        List<RegistrationJob> regs = SERVER.getLocalGitDB().listRepoRegistrations(admin1, gitUrl);
+	        Assert.assertEquals(1, regs.size());
+	        Assert.assertEquals("done", regs.get(0).getStage().name());
+	        Assert.assertEquals(moduleName, regs.get(0).getModuleName());
+	        Assert.assertEquals(regs.get(0).getFilesTotal(), regs.get(0).getFilesStored());
+	        Assert.assertEquals(0, SERVER.getLocalGitDB().listRepoRegistrations("user1", gitUrl).size());
             Assert.assertEquals(2, CLIENT.listMethods(new ListParams().withTag("dev")).size() -
                     CLIENT.listMethods(new ListParams().withTag("release")).size());
             Assert.assertEquals(2, CLIENT.listMethodsSpec(new ListParams().withTag("dev")).size() -
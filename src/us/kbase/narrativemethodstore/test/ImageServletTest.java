@@ -0,0 +1,240 @@
+package us.kbase.narrativemethodstore.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jetty.server.HttpConnection;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import us.kbase.narrativemethodstore.ImageServlet;
+
+public class ImageServletTest {
+    private static final String CONTENT = "0123456789";
+    private static final String ETAG = "\"a-123\"";
+    private static File imageFile;
+
+    @BeforeClass
+    public static void prepareFile() throws Exception {
+        imageFile = File.createTempFile("image_servlet_", ".png");
+        FileUtils.writeStringToFile(imageFile, CONTENT);
+    }
+
+    @AfterClass
+    public static void deleteFile() {
+        imageFile.delete();
+    }
+
+    @Test
+    public void parseRangeTest() {
+        Assert.assertEquals("[2, 5]", Arrays.toString(ImageServlet.parseRange("bytes=2-5", 10)));
+        // end beyond the file is cut
+        Assert.assertEquals("[2, 9]", Arrays.toString(ImageServlet.parseRange("bytes=2-100", 10)));
+        // open range
+        Assert.assertEquals("[7, 9]", Arrays.toString(ImageServlet.parseRange("bytes=7-", 10)));
+        // suffix ranges
+        Assert.assertEquals("[7, 9]", Arrays.toString(ImageServlet.parseRange("bytes=-3", 10)));
+        Assert.assertEquals("[0, 9]", Arrays.toString(ImageServlet.parseRange("bytes=-30", 10)));
+        // not satisfiable
+        Assert.assertEquals(0, ImageServlet.parseRange("bytes=10-", 10).length);
+        Assert.assertEquals(0, ImageServlet.parseRange("bytes=5-2", 10).length);
+        Assert.assertEquals(0, ImageServlet.parseRange("bytes=-0", 10).length);
+        // ignored, whole file is sent
+        Assert.assertNull(ImageServlet.parseRange("bytes=0-1,5-6", 10));
+        Assert.assertNull(ImageServlet.parseRange("bytes=abc", 10));
+        Assert.assertNull(ImageServlet.parseRange("bytes=1-x", 10));
+        Assert.assertNull(ImageServlet.parseRange("items=0-1", 10));
+    }
+
+    @Test
+    public void sendFileTest() throws Exception {
+        FakeResponse resp = sendFile(headers());
+        Assert.assertEquals(200, resp.status);
+        Assert.assertEquals(CONTENT, resp.body());
+        Assert.assertEquals("10", resp.headers.get("Content-Length"));
+        Assert.assertEquals("bytes", resp.headers.get("Accept-Ranges"));
+        resp = sendFile(headers("Range", "bytes=-3"));
+        Assert.assertEquals(206, resp.status);
+        Assert.assertEquals("789", resp.body());
+        Assert.assertEquals("bytes 7-9/10", resp.headers.get("Content-Range"));
+        Assert.assertEquals("3", resp.headers.get("Content-Length"));
+        resp = sendFile(headers("Range", "bytes=4-"));
+        Assert.assertEquals(206, resp.status);
+        Assert.assertEquals("456789", resp.body());
+        resp = sendFile(headers("Range", "bytes=20-"));
+        Assert.assertEquals(416, resp.status);
+        Assert.assertEquals("bytes */10", resp.headers.get("Content-Range"));
+        Assert.assertEquals("", resp.body());
+        resp = sendFile(headers("Range", "bytes=0-1,5-6"));
+        Assert.assertEquals(200, resp.status);
+        Assert.assertEquals(CONTENT, resp.body());
+        // If-Range with current ETag keeps range, stale one gets whole file
+        resp = sendFile(headers("Range", "bytes=0-1", "If-Range", ETAG));
+        Assert.assertEquals(206, resp.status);
+        Assert.assertEquals("01", resp.body());
+        resp = sendFile(headers("Range", "bytes=0-1", "If-Range", "\"a-122\""));
+        Assert.assertEquals(200, resp.status);
+        Assert.assertEquals(CONTENT, resp.body());
+        // weak validators are not allowed in If-Range
+        resp = sendFile(headers("Range", "bytes=0-1", "If-Range", "W/" + ETAG));
+        Assert.assertEquals(200, resp.status);
+        Assert.assertEquals(CONTENT, resp.body());
+    }
+
+    @Test
+    public void jettyTest() throws Exception {
+        final List<Object> outputs = new ArrayList<Object>();
+        Server jettyServer = new Server(0);
+        ServletContextHandler context = new ServletContextHandler();
+        context.setContextPath("/");
+        jettyServer.setHandler(context);
+        context.addServlet(new ServletHolder(new HttpServlet() {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+                    throws ServletException, IOException {
+                outputs.add(resp.getOutputStream());
+                ImageServlet.sendFile(req, resp, imageFile, ETAG);
+            }
+        }), "/img");
+        jettyServer.start();
+        try {
+            URL url = new URL("http://localhost:" + jettyServer.getConnectors()[0].getLocalPort() + 
+                    "/img");
+            HttpURLConnection conn = (HttpURLConnection)url.openConnection();
+            Assert.assertEquals(200, conn.getResponseCode());
+            Assert.assertEquals(CONTENT, IOUtils.toString(conn.getInputStream()));
+            conn = (HttpURLConnection)url.openConnection();
+            conn.setRequestProperty("Range", "bytes=3-5");
+            Assert.assertEquals(206, conn.getResponseCode());
+            Assert.assertEquals("bytes 3-5/10", conn.getHeaderField("Content-Range"));
+            Assert.assertEquals("345", IOUtils.toString(conn.getInputStream()));
+            // mapped file is passed to Jetty connector rather than copied into stream
+            Assert.assertTrue(outputs.get(0) instanceof HttpConnection.Output);
+        } finally {
+            jettyServer.stop();
+        }
+    }
+
+    @Test
+    public void checkNotModifiedTest() throws Exception {
+        long lastModified = 1450000000123L;
+        FakeResponse resp = checkNotModified(headers(), ETAG, lastModified, false);
+        Assert.assertEquals(ETAG, resp.headers.get("ETag"));
+        Assert.assertEquals(lastModified, resp.headers.get("Last-Modified"));
+        resp = checkNotModified(headers("If-None-Match", ETAG), ETAG, lastModified, true);
+        Assert.assertEquals(304, resp.status);
+        checkNotModified(headers("If-None-Match", "\"x\", " + ETAG + " ,\"y\""), ETAG, lastModified, true);
+        checkNotModified(headers("If-None-Match", "\"x\",\"y\""), ETAG, lastModified, false);
+        checkNotModified(headers("If-None-Match", "*"), ETAG, lastModified, true);
+        checkNotModified(headers("If-None-Match", "W/" + ETAG), ETAG, lastModified, true);
+        checkNotModified(headers("If-None-Match", "\"a-123"), ETAG, lastModified, false);
+        // no ETag of image, nothing can match
+        checkNotModified(headers("If-None-Match", ETAG), null, -1, false);
+        // If-None-Match takes precedence over If-Modified-Since
+        checkNotModified(headers("If-None-Match", "\"x\"",
+                "If-Modified-Since", lastModified / 1000 * 1000), ETAG, lastModified, false);
+        checkNotModified(headers("If-Modified-Since", lastModified / 1000 * 1000),
+                ETAG, lastModified, true);
+        checkNotModified(headers("If-Modified-Since", lastModified - 5000),
+                ETAG, lastModified, false);
+    }
+
+    private static FakeResponse sendFile(Map<String, Object> headers) throws IOException {
+        FakeResponse resp = new FakeResponse();
+        ImageServlet.sendFile(request(headers), resp.proxy(), imageFile, ETAG);
+        return resp;
+    }
+
+    private static FakeResponse checkNotModified(Map<String, Object> headers, String etag,
+            long lastModified, boolean expected) {
+        FakeResponse resp = new FakeResponse();
+        Assert.assertEquals("" + headers, expected, ImageServlet.checkNotModified(
+                request(headers), resp.proxy(), etag, lastModified));
+        Assert.assertEquals(expected ? 304 : 200, resp.status);
+        return resp;
+    }
+
+    private static Map<String, Object> headers(Object... keysAndValues) {
+        Map<String, Object> ret = new HashMap<String, Object>();
+        for (int i = 0; i < keysAndValues.length; i += 2)
+            ret.put((String)keysAndValues[i], keysAndValues[i + 1]);
+        return ret;
+    }
+
+    private static HttpServletRequest request(final Map<String, Object> headers) {
+        return (HttpServletRequest)Proxy.newProxyInstance(ImageServletTest.class.getClassLoader(),
+                new Class<?>[] {HttpServletRequest.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getHeader"))
+                    return (String)headers.get(args[0]);
+                if (method.getName().equals("getDateHeader")) {
+                    Long ret = (Long)headers.get(args[0]);
+                    return ret == null ? -1L : ret;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static class FakeResponse {
+        int status = 200;
+        Map<String, Object> headers = new HashMap<String, Object>();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        String body() {
+            return new String(output.toByteArray());
+        }
+
+        HttpServletResponse proxy() {
+            return (HttpServletResponse)Proxy.newProxyInstance(ImageServletTest.class.getClassLoader(),
+                    new Class<?>[] {HttpServletResponse.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    String name = method.getName();
+                    if (name.equals("setHeader") || name.equals("setDateHeader")) {
+                        headers.put((String)args[0], args[1]);
+                    } else if (name.equals("setStatus")) {
+                        status = (Integer)args[0];
+                    } else if (name.equals("getOutputStream")) {
+                        return new ServletOutputStream() {
+                            @Override
+                            public void write(int b) throws IOException {
+                                output.write(b);
+                            }
+                        };
+                    } else {
+                        throw new UnsupportedOperationException(name);
+                    }
+                    return null;
+                }
+            });
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package us.kbase.narrativemethodstore.util;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -10,29 +11,50 @@ import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.StringReader;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
 
 public class TextUtils {
     private static Pattern wsDiv = Pattern.compile("\\s+");
+    private static final Charset UTF8 = Charset.forName("utf-8");
     
     public static String text(URL url) throws IOException {
         return text(url.openStream());
     }
     
     public static String text(File f) throws IOException {
-        return text(new FileInputStream(f));
+        return text(Files.readAllBytes(f.toPath()));
     }
     
+    /**
+     * Reads the whole stream as UTF-8 text and closes it.
+     */
     public static String text(InputStream is) throws IOException {
-        StringBuilder response = new StringBuilder();
-        BufferedReader in = new BufferedReader(new InputStreamReader(is));
-        String line;
-        while ((line = in.readLine()) != null) 
-            response.append(line+"\n");
-        in.close();
-        return response.toString();
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.max(is.available(), 8192));
+            byte[] buffer = new byte[8192];
+            for (int len = is.read(buffer); len >= 0; len = is.read(buffer))
+                baos.write(buffer, 0, len);
+            return text(baos.toByteArray());
+        } finally {
+            is.close();
+        }
+    }
+    
+    /**
+     * Decodes UTF-8 text. Line breaks are converted to "\n" and last line is always
+     * terminated by "\n" (the same way as reading text line by line).
+     */
+    public static String text(byte[] data) {
+        String ret = new String(data, UTF8);
+        if (ret.indexOf('\r') >= 0)
+            ret = ret.replace("\r\n", "\n").replace('\r', '\n');
+        if (!ret.isEmpty() && !ret.endsWith("\n"))
+            ret += "\n";
+        return ret;
     }
 
     public static List<String> lines(URL url) throws IOException {
@@ -0,0 +1,124 @@
+package us.kbase.narrativemethodstore.util.test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import us.kbase.narrativemethodstore.util.TextUtils;
+
+public class TextUtilsTest {
+    private static final String[] TEXTS = {
+        "",
+        "\n",
+        "\r",
+        "\r\n",
+        "one line",
+        "a\nb\n",
+        "a\nb",
+        "a\r\nb\r\n",
+        "a\r\nb",
+        "a\rb\r",
+        "a\rb",
+        "a\r\r\nb\n\r",
+        "\n\n\r\n\r\r",
+        "\ufeffname: bom\r\n",
+        "\u00e9t\u00e9 \u2013 \ud83d\ude00\r\n\u4e2d\u6587",
+    };
+
+    @Test
+    public void sameAsLineReaderTest() throws Exception {
+        for (String text : TEXTS) {
+            byte[] data = text.getBytes("utf-8");
+            String expected = oldText(new ByteArrayInputStream(data));
+            String msg = Arrays.toString(data);
+            Assert.assertEquals(msg, expected, TextUtils.text(data));
+            Assert.assertEquals(msg, expected, TextUtils.text(new ByteArrayInputStream(data)));
+            // bytes of multibyte characters and CR/LF pairs come in different reads
+            Assert.assertEquals(msg, expected, TextUtils.text(new ChunkedInputStream(data, 1)));
+            File f = File.createTempFile("text_utils_", ".txt");
+            try {
+                FileUtils.writeByteArrayToFile(f, data);
+                Assert.assertEquals(msg, expected, TextUtils.text(f));
+            } finally {
+                f.delete();
+            }
+        }
+    }
+
+    @Test
+    public void largeTextTest() throws Exception {
+        // line breaks and multibyte characters cross the 8192 byte buffer boundary
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < 30000; i++)
+            sb.append("line ").append(i).append(i % 3 == 0 ? "\r\n" : i % 3 == 1 ? "\r" : 
+                " \u00e9\u2013\ud83d\ude00\n");
+        byte[] data = sb.toString().getBytes("utf-8");
+        String expected = oldText(new ByteArrayInputStream(data));
+        Assert.assertEquals(expected, TextUtils.text(data));
+        Assert.assertEquals(expected, TextUtils.text(new ByteArrayInputStream(data)));
+        Assert.assertEquals(expected, TextUtils.text(new ChunkedInputStream(data, 8191)));
+    }
+
+    @Test
+    public void malformedTest() throws Exception {
+        byte[] data = {'a', (byte)0xc3, '\r', (byte)0xe2, (byte)0x80, 'b', (byte)0xff};
+        Assert.assertEquals(oldText(new ByteArrayInputStream(data)), TextUtils.text(data));
+    }
+
+    @Test
+    public void closeTest() throws Exception {
+        ChunkedInputStream is = new ChunkedInputStream("abc".getBytes("utf-8"), 2);
+        Assert.assertEquals("abc\n", TextUtils.text(is));
+        Assert.assertTrue(is.closed);
+    }
+
+    /**
+     * Line-by-line reading used by TextUtils.text before (with UTF-8 instead of
+     * platform default charset).
+     */
+    private static String oldText(InputStream is) throws IOException {
+        StringBuilder response = new StringBuilder();
+        BufferedReader in = new BufferedReader(new InputStreamReader(is, "utf-8"));
+        String line;
+        while ((line = in.readLine()) != null)
+            response.append(line + "\n");
+        in.close();
+        return response.toString();
+    }
+
+    private static class ChunkedInputStream extends FilterInputStream {
+        private final int chunk;
+        boolean closed = false;
+
+        ChunkedInputStream(byte[] data, int chunk) {
+            super(new ByteArrayInputStream(data));
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, chunk));
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}